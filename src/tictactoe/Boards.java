@@ -0,0 +1,228 @@
+package tictactoe;
+
+import java.util.List;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+
+/**
+ * Bit-packed representation of a 3x3 board, for code that needs to examine many positions quickly
+ * (search engines, variants built from several boards, etc).
+ * <p>
+ * A board is packed into the low 18 bits of an int: bits 0-8 hold the squares occupied by O and bits 9-17
+ * the squares occupied by X. The square at a given location is numbered row * 3 + column.
+ * The lines used to decide the status of a board are taken from {@link Game#LINES}, so a packed board
+ * has exactly the same status as the equivalent {@link Game}.
+ */
+final class Boards {
+
+	static final int CELLS = 9 ;
+	static final int CELL_MASK = 0x1FF ;
+	static final int X_SHIFT = 9 ;
+
+	/**
+	 * Bit masks (over the nine cells) of each line in Game.LINES, in the same order.
+	 */
+	static final int[] LINE_MASKS = createLineMasks();
+
+	/**
+	 * The eight symmetries of the board (rotations and reflections), as permutations of the cell indexes:
+	 * SYMMETRIES[s][cell] is the cell that cell is moved to by symmetry s. Symmetry 0 is the identity.
+	 */
+	static final int[][] SYMMETRIES = createSymmetries();
+
+	private static final int[] INVERSE_SYMMETRIES = createInverseSymmetries();
+
+	private Boards() {}
+
+	private static int[] createLineMasks() {
+		int[] masks = new int[Game.LINES.size()];
+		for (int i = 0 ; i < masks.length ; i++) {
+			List<Location> line = Game.LINES.get(i);
+			for (Location location : line) {
+				masks[i] |= 1 << index(location);
+			}
+		}
+		return masks ;
+	}
+
+	private static int[][] createSymmetries() {
+		int[][] symmetries = new int[8][CELLS];
+		for (int column = 0 ; column < 3 ; column++) {
+			for (int row = 0 ; row < 3 ; row++) {
+				final int cell = row * 3 + column ;
+				symmetries[0][cell] = row * 3 + column ;
+				symmetries[1][cell] = column * 3 + (2 - row) ;
+				symmetries[2][cell] = (2 - row) * 3 + (2 - column) ;
+				symmetries[3][cell] = (2 - column) * 3 + row ;
+				symmetries[4][cell] = row * 3 + (2 - column) ;
+				symmetries[5][cell] = (2 - row) * 3 + column ;
+				symmetries[6][cell] = column * 3 + row ;
+				symmetries[7][cell] = (2 - column) * 3 + (2 - row) ;
+			}
+		}
+		return symmetries ;
+	}
+
+	private static int[] createInverseSymmetries() {
+		int[] inverses = new int[SYMMETRIES.length];
+		for (int s = 0 ; s < SYMMETRIES.length ; s++) {
+			for (int t = 0 ; t < SYMMETRIES.length ; t++) {
+				boolean inverse = true ;
+				for (int cell = 0 ; cell < CELLS ; cell++) {
+					if (SYMMETRIES[t][SYMMETRIES[s][cell]] != cell) {
+						inverse = false ;
+					}
+				}
+				if (inverse) {
+					inverses[s] = t ;
+				}
+			}
+		}
+		return inverses ;
+	}
+
+	/**
+	 * The cell index (0-8) of the specified location.
+	 */
+	static int index(Location location) {
+		return location.getRow() * 3 + location.getColumn() ;
+	}
+
+	/**
+	 * The location of the specified cell index (0-8).
+	 */
+	static Location location(int index) {
+		return new Location(index % 3, index / 3);
+	}
+
+	static int oCells(int board) {
+		return board & CELL_MASK ;
+	}
+
+	static int xCells(int board) {
+		return (board >>> X_SHIFT) & CELL_MASK ;
+	}
+
+	static int emptyCells(int board) {
+		return ~(board | (board >>> X_SHIFT)) & CELL_MASK ;
+	}
+
+	/**
+	 * The board with the specified mark added at the specified cell index.
+	 */
+	static int withMark(int board, int index, SquareState mark) {
+		return board | (1 << (mark == SquareState.X ? index + X_SHIFT : index)) ;
+	}
+
+	static SquareState getSquare(int board, int index) {
+		if ((board & (1 << index)) != 0) {
+			return SquareState.O ;
+		} else if ((board & (1 << (index + X_SHIFT))) != 0) {
+			return SquareState.X ;
+		} else {
+			return SquareState.EMPTY ;
+		}
+	}
+
+	/**
+	 * Packs the current state of the board of the specified game.
+	 */
+	static int pack(Game game) {
+		int board = 0 ;
+		for (int index = 0 ; index < CELLS ; index++) {
+			SquareState square = game.getSquare(location(index));
+			if (square != SquareState.EMPTY) {
+				board = withMark(board, index, square);
+			}
+		}
+		return board ;
+	}
+
+	/**
+	 * The board transformed by the specified symmetry.
+	 */
+	static int transform(int board, int symmetry) {
+		final int[] permutation = SYMMETRIES[symmetry];
+		int transformed = 0 ;
+		for (int cell = 0 ; cell < CELLS ; cell++) {
+			transformed |= ((board >>> cell) & 1) << permutation[cell] ;
+			transformed |= ((board >>> (cell + X_SHIFT)) & 1) << (permutation[cell] + X_SHIFT) ;
+		}
+		return transformed ;
+	}
+
+	/**
+	 * The symmetry that undoes the specified symmetry.
+	 */
+	static int inverse(int symmetry) {
+		return INVERSE_SYMMETRIES[symmetry];
+	}
+
+	/**
+	 * The symmetry that transforms the board into its canonical form: the smallest packed value among all
+	 * the boards equivalent to it by symmetry. Equivalent boards have the same canonical form.
+	 */
+	static int canonicalSymmetry(int board) {
+		int best = 0 ;
+		int bestBoard = board ;
+		for (int symmetry = 1 ; symmetry < SYMMETRIES.length ; symmetry++) {
+			final int transformed = transform(board, symmetry);
+			if (transformed < bestBoard) {
+				bestBoard = transformed ;
+				best = symmetry ;
+			}
+		}
+		return best ;
+	}
+
+	/**
+	 * The canonical form of a move: the cell, in the canonical form of the board (see canonicalSymmetry(...)),
+	 * that the move is mapped to. If the canonical board is itself symmetrical, several symmetries map the
+	 * board to it, and they may map the move to different (but equivalent) cells; the smallest is used, so
+	 * equivalent moves always have the same canonical form.
+	 */
+	static int canonicalCell(int board, int cell) {
+		final int canonicalBoard = transform(board, canonicalSymmetry(board));
+		int best = CELLS ;
+		for (int symmetry = 0 ; symmetry < SYMMETRIES.length ; symmetry++) {
+			if (transform(board, symmetry) == canonicalBoard) {
+				best = Math.min(best, SYMMETRIES[symmetry][cell]);
+			}
+		}
+		return best ;
+	}
+
+	/**
+	 * True if the specified set of cells (a 9-bit mask) contains a complete line.
+	 */
+	static boolean hasLine(int cells) {
+		for (int mask : LINE_MASKS) {
+			if ((cells & mask) == mask) {
+				return true ;
+			}
+		}
+		return false ;
+	}
+
+	/**
+	 * The status of a packed board, computed in the same way as the gameStatus of a Game:
+	 * a completed line wins, otherwise the game is open while any square is empty, and drawn when the board is full.
+	 */
+	static GameStatus status(int board) {
+		final int o = oCells(board);
+		final int x = xCells(board);
+		for (int mask : LINE_MASKS) {
+			if ((o & mask) == mask) {
+				return GameStatus.O_WON ;
+			} else if ((x & mask) == mask) {
+				return GameStatus.X_WON ;
+			}
+		}
+		if ((o | x) != CELL_MASK) {
+			return GameStatus.OPEN ;
+		}
+		return GameStatus.DRAWN ;
+	}
+
+}
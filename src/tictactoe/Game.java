@@ -98,6 +98,7 @@ public class Game {
 		this.hint = new SimpleObjectProperty<Location>(this, "hint");
 		
 		createGameStatusBinding();
+		Metrics.getInstance().gameStarted();
 	}
 
 	private static List<List<Location>> populateLines() {
@@ -248,6 +249,7 @@ public class Game {
 			}
 		}
 		hint.set(null);
+		Metrics.getInstance().moveMade();
 	}
 	
 	/**
@@ -266,6 +268,7 @@ public class Game {
 		}
 		hint.set( null );
 		currentPlayer.set(firstPlayer);
+		Metrics.getInstance().gameStarted();
 	}
 	
 	/**
@@ -284,7 +287,15 @@ public class Game {
 			{ super.bind(allSquares.toArray(new Observable[9])); }
 			@Override
 			public GameStatus computeValue() {
-				
+				final long start = System.nanoTime();
+				try {
+					return computeStatus();
+				} finally {
+					Metrics.getInstance().statusRecomputeTime().recordSince(start);
+				}
+			}
+			
+			private GameStatus computeStatus() {
 				for (List<Location> line : LINES) {
 					GameStatus check = checkForWinner(line);
 					if (check != null) {
@@ -1,16 +1,16 @@
 package tictactoe;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
 import javafx.beans.binding.Bindings;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.concurrent.WorkerStateEvent;
 import javafx.event.EventHandler;
@@ -27,6 +27,8 @@ public class GameController {
 	private final ComputerPlayer computerPlayer ;
 	private final MoveChoosingStrategy hintStrategy ;
 	private final Map<Location, Square> squares ;
+	private final PulseCoalescer<Location> squareUpdates ;
+	private Location lastMove ;
 	
 	public GameController(Game game, Player humanPlayer, ComputerPlayer computerPlayer) {
 		this.game = game ;
@@ -42,6 +44,12 @@ public class GameController {
 		});
 		this.hintStrategy = new UnbeatableStrategy();
 		this.squares = new HashMap<>();
+		this.squareUpdates = new PulseCoalescer<>(new PulseCoalescer.Updater<Location>() {
+			@Override
+			public void update(Location location) {
+				squares.get(location).getController().refresh();
+			}
+		});
 	}
 
 	@FXML
@@ -54,36 +62,66 @@ public class GameController {
 	private MenuItem hintMenuItem ;
 
 	
-	public void initialize() throws IOException {
+	public void initialize() {
 		setUpSquares();
+		setUpBoardDisabledBinding();
 		getComputerToMoveWhenComputerIsCurrentPlayer();
 		setUpStatusLabelBindings();
 		setUpHintBinding();
+		setUpLastMoveHighlight();
 	}
 	
 	private void setUpHintBinding() {
+		// Only the squares losing and gaining the hint need to be updated:
 		game.hintProperty().addListener(new ChangeListener<Location>() {
 			@Override
 			public void changed(ObservableValue<? extends Location> observable,
 					Location oldHint, Location newHint) {
-				for (Location loc : squares.keySet()) {
-					final Square square = squares.get(loc);
-					final ObservableList<String> styleClass = square.getStyleClass();
-					if (loc.equals(newHint)) {
-						if (! styleClass.contains("hint")) {
-							styleClass.add("hint");
-						}
-					} else {
-						while (styleClass.contains("hint")) {
-							styleClass.remove("hint");
-						}
-					}
+				if (oldHint != null) {
+					squares.get(oldHint).getController().setHinted(false);
+				}
+				if (newHint != null) {
+					squares.get(newHint).getController().setHinted(true);
 				}
 			}
 		});
 		hintMenuItem.disableProperty().bind(game.currentPlayerProperty().isNotEqualTo(humanPlayer));
 	}
 
+	private void setUpLastMoveHighlight() {
+		for (final Location location : squares.keySet()) {
+			game.squareProperty(location).addListener(new ChangeListener<SquareState>() {
+				@Override
+				public void changed(ObservableValue<? extends SquareState> observable,
+						SquareState oldValue, SquareState newValue) {
+					if (newValue != SquareState.EMPTY) {
+						setLastMove(location);
+					} else if (location.equals(lastMove)) {
+						setLastMove(null);
+					}
+				}
+			});
+		}
+	}
+
+	private void setLastMove(Location location) {
+		if (lastMove != null) {
+			squares.get(lastMove).getController().setLastMove(false);
+		}
+		lastMove = location ;
+		if (lastMove != null) {
+			squares.get(lastMove).getController().setLastMove(true);
+		}
+	}
+
+	private void setUpBoardDisabledBinding() {
+		// A single binding for the whole board: the squares inherit its disabled state
+		board.disableProperty().bind(
+			game.currentPlayerProperty().isNotEqualTo(humanPlayer)
+			.or(game.gameStatusProperty().isNotEqualTo(GameStatus.OPEN))
+		);
+	}
+
 	private void setUpStatusLabelBindings() {
 		statusLabel.textProperty().bind(Bindings.format("%s", game.gameStatusProperty()));
 		currentPlayerLabel.textProperty().bind(
@@ -112,13 +150,20 @@ public class GameController {
 					final Task<Location> computerMoveTask = new Task<Location>() {
 						@Override
 						public Location call() throws Exception {
-							return computerPlayer.chooseMove(game);
+							final long start = System.nanoTime();
+							try {
+								return computerPlayer.chooseMove(game);
+							} finally {
+								Metrics.getInstance().engineThinkTime().recordSince(start);
+							}
 						}
 					};
 					computerMoveTask.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
 						@Override
 						public void handle(WorkerStateEvent event) {
+							final long start = System.nanoTime();
 							game.makeMove(computerPlayer, computerMoveTask.getValue());
+							Metrics.getInstance().uiApplyTime().recordSince(start);
 						}
 					});
 					executorService.submit(computerMoveTask);
@@ -127,11 +172,11 @@ public class GameController {
 		});
 	}
 
-	private void setUpSquares() throws IOException {
+	private void setUpSquares() {
 		// Arguably shouldn't really do this in the controller, but avoiding it gets messy.
 		for (int column = 0 ; column < 3; column++) {
 			for (int row = 0 ; row < 3 ; row++) {
-				final Square square = new Square(column, row, humanPlayer, game);
+				final Square square = new Square(column, row, humanPlayer, game, squareUpdates);
 				board.getChildren().add(square);
 				squares.put(new Location(column, row), square);
 			}
@@ -152,7 +197,9 @@ public class GameController {
 	
 	@FXML
 	private void hint() {
+		final long start = System.nanoTime();
 		Location moveChoice = hintStrategy.chooseMove(game);
+		Metrics.getInstance().hintTime().recordSince(start);
 		game.setHint(moveChoice);
 	}
 	
@@ -0,0 +1,62 @@
+package tictactoe;
+
+import tictactoe.Game.SquareState;
+
+/**
+ * A Game whose moves and resets are recorded in a {@link MoveJournal}, so that it can be restored if the
+ * JVM exits while it is in progress. Each game is identified in the journal by a session id.
+ */
+public class JournaledGame extends Game {
+
+	private final MoveJournal journal ;
+	private final long sessionId ;
+
+	/**
+	 * Creates a new game between the two players, recorded in the journal under the specified session id.
+	 * The player playing O will have the first move.
+	 */
+	public JournaledGame(MoveJournal journal, long sessionId, Player oPlayer, Player xPlayer) {
+		super(oPlayer, xPlayer);
+		this.journal = journal ;
+		this.sessionId = sessionId ;
+		journal.append(MoveEvent.reset(sessionId, SquareState.O));
+	}
+
+	/**
+	 * Restores a game recovered from the journal, which continues to be recorded under the same session id.
+	 * @param session a session from journal.getRecoveredSessions()
+	 */
+	public JournaledGame(MoveJournal journal, MoveJournal.Session session, Player oPlayer, Player xPlayer) {
+		super(oPlayer, xPlayer);
+		this.journal = journal ;
+		this.sessionId = session.getSessionId();
+		// replay through the superclass, so the recovered moves are not journaled again:
+		super.reset(session.getFirstMark() == SquareState.X ? xPlayer : oPlayer);
+		for (int i = 0 ; i < session.getMoveCount() ; i++) {
+			super.makeMove(session.getMark(i) == SquareState.X ? xPlayer : oPlayer, session.getLocation(i));
+		}
+	}
+
+	public long getSessionId() {
+		return sessionId ;
+	}
+
+	@Override
+	public void makeMove(Player player, Location location) {
+		super.makeMove(player, location);
+		journal.append(MoveEvent.move(sessionId, location, player == getXPlayer() ? SquareState.X : SquareState.O));
+	}
+
+	@Override
+	public void reset(Player firstPlayer) {
+		super.reset(firstPlayer);
+		journal.append(MoveEvent.reset(sessionId, firstPlayer == getXPlayer() ? SquareState.X : SquareState.O));
+	}
+
+	/**
+	 * Records that this session has ended, so it will not be recovered. The game should not be used after this.
+	 */
+	public void endSession() {
+		journal.append(MoveEvent.remove(sessionId));
+	}
+}
@@ -0,0 +1,153 @@
+package tictactoe;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies, in nanoseconds, with log-linear buckets in the style of HdrHistogram.
+ * <p>
+ * Values below 64ns are recorded exactly; above that, each power of two is split into 32 buckets, so any
+ * recorded value is reported to within about 3%. All storage is allocated up front, so {@link #record(long)}
+ * never allocates and may be called on hot paths from any thread.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5 ;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS ;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS ;
+
+	private final String name ;
+	private final AtomicLongArray counts ;
+	private final AtomicLong count ;
+	private final AtomicLong total ;
+	private final AtomicLong max ;
+
+	public LatencyHistogram(String name) {
+		this.name = name ;
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.total = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+
+	public String getName() {
+		return name ;
+	}
+
+	/**
+	 * Records a single latency.
+	 * @param nanos latency in nanoseconds; negative values are recorded as zero.
+	 */
+	public void record(long nanos) {
+		final long value = Math.max(nanos, 0L);
+		counts.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long currentMax = max.get();
+		while (value > currentMax && ! max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Records the time elapsed since the specified start time, as given by System.nanoTime().
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	private static int bucketIndex(long value) {
+		final int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		if (highestBit <= SUB_BUCKET_BITS) {
+			return (int) value ;
+		}
+		final int shift = highestBit - SUB_BUCKET_BITS ;
+		final int mantissa = (int) (value >>> shift) ;
+		return (shift + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS ;
+	}
+
+	// Largest value that would be recorded in the specified bucket
+	private static long highestValueInBucket(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index ;
+		}
+		final int shift = index / SUB_BUCKETS - 1 ;
+		final long mantissa = SUB_BUCKETS + index % SUB_BUCKETS ;
+		return ((mantissa + 1) << shift) - 1 ;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	public long getMeanNanos() {
+		final long n = count.get();
+		return n == 0 ? 0 : total.get() / n ;
+	}
+
+	/**
+	 * The value below which the specified percentage of recorded values fall (to the histogram's precision).
+	 * @param percentile between 0 and 100
+	 * @return the value in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		final long n = count.get();
+		if (n == 0) {
+			return 0 ;
+		}
+		final long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * n));
+		long cumulative = 0 ;
+		for (int i = 0 ; i < BUCKETS ; i++) {
+			cumulative += counts.get(i);
+			if (cumulative >= target) {
+				return Math.min(highestValueInBucket(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Summary of the histogram, in microseconds: count, mean, p50, p90, p99, p99.9 and max.
+	 */
+	public Map<String, Long> getSummaryMicros() {
+		Map<String, Long> summary = new LinkedHashMap<>();
+		summary.put("count", getCount());
+		summary.put("mean", toMicros(getMeanNanos()));
+		summary.put("p50", toMicros(getValueAtPercentile(50)));
+		summary.put("p90", toMicros(getValueAtPercentile(90)));
+		summary.put("p99", toMicros(getValueAtPercentile(99)));
+		summary.put("p99.9", toMicros(getValueAtPercentile(99.9)));
+		summary.put("max", toMicros(getMaxNanos()));
+		return summary ;
+	}
+
+	private static long toMicros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	/**
+	 * Clears all recorded values. Values recorded concurrently with a reset may or may not be retained.
+	 */
+	public void reset() {
+		for (int i = 0 ; i < BUCKETS ; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: count=%d mean=%dus p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus", name, getCount(),
+				toMicros(getMeanNanos()), toMicros(getValueAtPercentile(50)), toMicros(getValueAtPercentile(90)),
+				toMicros(getValueAtPercentile(99)), toMicros(getValueAtPercentile(99.9)), toMicros(getMaxNanos()));
+	}
+}
@@ -0,0 +1,188 @@
+package tictactoe;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Application-wide latency histograms and counters for the hot paths of the game: choosing moves,
+ * applying them to the UI, and recomputing the game status. None of the recording methods allocate,
+ * so they are safe to call on every move. Call {@link #register()} to expose the metrics through JMX
+ * (e.g. to jconsole or VisualVM) as the MBean tictactoe:type=Metrics.
+ */
+public final class Metrics implements MetricsMXBean {
+
+	public static final String OBJECT_NAME = "tictactoe:type=Metrics" ;
+
+	private static final Metrics INSTANCE = new Metrics();
+
+	private final LatencyHistogram engineThinkTime = new LatencyHistogram("Engine think time");
+	private final LatencyHistogram hintTime = new LatencyHistogram("Hint time");
+	private final LatencyHistogram uiApplyTime = new LatencyHistogram("UI apply time");
+	private final LatencyHistogram statusRecomputeTime = new LatencyHistogram("Status recompute time");
+
+	private final AtomicLong games = new AtomicLong();
+	private final AtomicLong moves = new AtomicLong();
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong bookHits = new AtomicLong();
+	private final AtomicLong nodesSearched = new AtomicLong();
+	private volatile long startupTime ;
+
+	private Metrics() {}
+
+	public static Metrics getInstance() {
+		return INSTANCE ;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server. Calling this more than once has no further effect.
+	 * @throws IllegalStateException if the MBean cannot be registered.
+	 */
+	public synchronized void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (! server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Time taken by computer players (and other engines) to choose a move.
+	 */
+	public LatencyHistogram engineThinkTime() {
+		return engineThinkTime ;
+	}
+
+	/**
+	 * Time taken to compute a hint for the human player.
+	 */
+	public LatencyHistogram hintTime() {
+		return hintTime ;
+	}
+
+	/**
+	 * Time taken to apply a chosen move to the game on the FX Application Thread, including the bindings and
+	 * listeners it triggers. Rendering the changed squares is deferred to the next pulse (see PulseCoalescer)
+	 * and is not included.
+	 */
+	public LatencyHistogram uiApplyTime() {
+		return uiApplyTime ;
+	}
+
+	/**
+	 * Time taken to recompute the game status after the board changes.
+	 */
+	public LatencyHistogram statusRecomputeTime() {
+		return statusRecomputeTime ;
+	}
+
+	public void gameStarted() {
+		games.incrementAndGet();
+	}
+
+	public void moveMade() {
+		moves.incrementAndGet();
+	}
+
+	public void addCacheHits(long hits) {
+		cacheHits.addAndGet(hits);
+	}
+
+	public void addBookHits(long hits) {
+		bookHits.addAndGet(hits);
+	}
+
+	public void addNodesSearched(long nodes) {
+		nodesSearched.addAndGet(nodes);
+	}
+
+	/**
+	 * Records the time taken from the start of the application to its first rendered frame.
+	 */
+	public void setStartupTime(long nanos) {
+		startupTime = nanos ;
+	}
+
+	@Override
+	public long getStartupTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(startupTime);
+	}
+
+	@Override
+	public long getGames() {
+		return games.get();
+	}
+
+	@Override
+	public long getMoves() {
+		return moves.get();
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	@Override
+	public long getBookHits() {
+		return bookHits.get();
+	}
+
+	@Override
+	public long getNodesSearched() {
+		return nodesSearched.get();
+	}
+
+	@Override
+	public Map<String, Long> getEngineThinkTime() {
+		return engineThinkTime.getSummaryMicros();
+	}
+
+	@Override
+	public Map<String, Long> getHintTime() {
+		return hintTime.getSummaryMicros();
+	}
+
+	@Override
+	public Map<String, Long> getUiApplyTime() {
+		return uiApplyTime.getSummaryMicros();
+	}
+
+	@Override
+	public Map<String, Long> getStatusRecomputeTime() {
+		return statusRecomputeTime.getSummaryMicros();
+	}
+
+	@Override
+	public String getReport() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("startupTime=%dms%n", getStartupTimeMillis()));
+		builder.append(String.format("games=%d moves=%d cacheHits=%d bookHits=%d nodesSearched=%d%n", getGames(), getMoves(), getCacheHits(), getBookHits(), getNodesSearched()));
+		for (LatencyHistogram histogram : new LatencyHistogram[] {engineThinkTime, hintTime, uiApplyTime, statusRecomputeTime}) {
+			builder.append(histogram).append(String.format("%n"));
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public void reset() {
+		engineThinkTime.reset();
+		hintTime.reset();
+		uiApplyTime.reset();
+		statusRecomputeTime.reset();
+		games.set(0);
+		moves.set(0);
+		cacheHits.set(0);
+		bookHits.set(0);
+		nodesSearched.set(0);
+	}
+}
@@ -0,0 +1,24 @@
+package tictactoe;
+
+import java.util.Map;
+
+/**
+ * Management interface for {@link Metrics}. Latencies are reported in microseconds.
+ */
+public interface MetricsMXBean {
+	public long getStartupTimeMillis() ;
+
+	public long getGames() ;
+	public long getMoves() ;
+	public long getCacheHits() ;
+	public long getBookHits() ;
+	public long getNodesSearched() ;
+
+	public Map<String, Long> getEngineThinkTime() ;
+	public Map<String, Long> getHintTime() ;
+	public Map<String, Long> getUiApplyTime() ;
+	public Map<String, Long> getStatusRecomputeTime() ;
+
+	public String getReport() ;
+	public void reset() ;
+}
@@ -0,0 +1,85 @@
+package tictactoe;
+
+import tictactoe.Game.SquareState;
+
+/**
+ * An event in a live game, identified by a game id: a move, a reset, or the removal of the game
+ * (e.g. when its session ends). Move events are the unit of communication between the game sessions
+ * and views that only display games, such as the SpectatorDashboard.
+ */
+public final class MoveEvent {
+
+	public static enum Type { MOVE, RESET, REMOVE }
+
+	private final Type type ;
+	private final long gameId ;
+	private final int cell ;
+	private final SquareState mark ;
+
+	private MoveEvent(Type type, long gameId, int cell, SquareState mark) {
+		this.type = type ;
+		this.gameId = gameId ;
+		this.cell = cell ;
+		this.mark = mark ;
+	}
+
+	/**
+	 * A move in the specified game.
+	 * @throws IllegalArgumentException if mark is EMPTY
+	 */
+	public static MoveEvent move(long gameId, Location location, SquareState mark) {
+		if (mark != SquareState.O && mark != SquareState.X) {
+			throw new IllegalArgumentException("A move must be made with O or X, not "+mark);
+		}
+		return new MoveEvent(Type.MOVE, gameId, Boards.index(location), mark);
+	}
+
+	/**
+	 * The specified game has been reset to an empty board, with the specified mark to move first.
+	 * @throws IllegalArgumentException if firstMark is EMPTY
+	 */
+	public static MoveEvent reset(long gameId, SquareState firstMark) {
+		if (firstMark != SquareState.O && firstMark != SquareState.X) {
+			throw new IllegalArgumentException(firstMark + " cannot move first");
+		}
+		return new MoveEvent(Type.RESET, gameId, -1, firstMark);
+	}
+
+	/**
+	 * The specified game has finished and will receive no more events.
+	 */
+	public static MoveEvent remove(long gameId) {
+		return new MoveEvent(Type.REMOVE, gameId, -1, SquareState.EMPTY);
+	}
+
+	public Type getType() {
+		return type ;
+	}
+
+	public long getGameId() {
+		return gameId ;
+	}
+
+	/**
+	 * The cell index (row * 3 + column) of a move, or -1 for other events.
+	 */
+	public int getCell() {
+		return cell ;
+	}
+
+	public Location getLocation() {
+		return cell < 0 ? null : Boards.location(cell);
+	}
+
+	/**
+	 * The mark placed by a move, the mark moving first after a reset, or EMPTY for a removal.
+	 */
+	public SquareState getMark() {
+		return mark ;
+	}
+
+	@Override
+	public String toString() {
+		return type == Type.MOVE ? String.format("%d: %s at %s", gameId, mark, getLocation()) : String.format("%d: %s", gameId, type);
+	}
+}
@@ -0,0 +1,620 @@
+package tictactoe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import tictactoe.Game.SquareState;
+
+/**
+ * Write-ahead journal of the {@link MoveEvent}s of many concurrent game sessions, from which the sessions
+ * can be restored after the JVM exits or crashes.
+ * <p>
+ * Events are appended to an in-memory queue and written by a single background thread, which writes all
+ * the events queued since its last write and then forces them to disk with a single fsync ("group commit").
+ * Appending therefore never blocks on I/O; callers that need to know an event is durable can wait for it
+ * with {@link #awaitDurable(long)}.
+ * <p>
+ * The journal directory holds a snapshot of every live session (snapshot.bin) and the journal of events
+ * since that snapshot was taken (journal-N.log, where N is the snapshot's generation). After a configurable
+ * number of events, the writer thread writes a new snapshot and starts a new journal, so the journal that
+ * needs replaying on recovery stays short. Both files use fixed-size records with a checksum, so a record
+ * torn by a crash is detected and discarded. Replaced journals can optionally be kept in an archive
+ * subdirectory, as a record of every game played.
+ */
+public class MoveJournal implements Closeable {
+
+	/**
+	 * Default number of events written between snapshots.
+	 */
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 1_000_000 ;
+
+	private static final String SNAPSHOT_FILE = "snapshot.bin" ;
+	private static final String SNAPSHOT_TEMP_FILE = "snapshot.tmp" ;
+	private static final String ARCHIVE_DIRECTORY = "archive" ;
+	private static final String JOURNAL_PREFIX = "journal-" ;
+	private static final String JOURNAL_SUFFIX = ".log" ;
+	private static final int SNAPSHOT_MAGIC = 0x54545453 ; // "TTTS"
+
+	// journal record: session id (8), type (1), cell (1), mark (1), unused (1), CRC32 of the first 12 bytes (4)
+	static final int RECORD_SIZE = 16 ;
+	// snapshot record: session id (8), first mark (1), move count (1), moves, four bits each (8)
+	private static final int SESSION_SIZE = 18 ;
+	private static final int MAX_BATCH = 4096 ;
+
+	private static final MoveEvent.Type[] TYPES = MoveEvent.Type.values();
+	private static final SquareState[] MARKS = SquareState.values();
+
+	// markers passed to the writer thread through the queue; they are not written, and have no sequence number
+	private static final MoveEvent CLOSE = MoveEvent.remove(Long.MIN_VALUE);
+	private static final MoveEvent COMPACT = MoveEvent.remove(Long.MIN_VALUE);
+
+	/**
+	 * The state of a single session: which mark moved first after the last reset, and the moves made since.
+	 */
+	public static final class Session {
+		private final long sessionId ;
+		private SquareState firstMark ;
+		private int moveCount ;
+		private long moves ;
+
+		Session(long sessionId, SquareState firstMark, int moveCount, long moves) {
+			this.sessionId = sessionId ;
+			this.firstMark = firstMark ;
+			this.moveCount = moveCount ;
+			this.moves = moves ;
+		}
+
+		Session(Session other) {
+			this(other.sessionId, other.firstMark, other.moveCount, other.moves);
+		}
+
+		public long getSessionId() {
+			return sessionId ;
+		}
+
+		public SquareState getFirstMark() {
+			return firstMark ;
+		}
+
+		public int getMoveCount() {
+			return moveCount ;
+		}
+
+		/**
+		 * The cell index (row * 3 + column) of the specified move.
+		 */
+		public int getMove(int index) {
+			if (index < 0 || index >= moveCount) {
+				throw new IndexOutOfBoundsException(index + " is not a move in this session");
+			}
+			return (int) ((moves >>> (index * 4)) & 0xF) ;
+		}
+
+		public Location getLocation(int index) {
+			return Boards.location(getMove(index));
+		}
+
+		/**
+		 * The mark that made the specified move.
+		 */
+		public SquareState getMark(int index) {
+			final boolean first = index % 2 == 0 ;
+			return (firstMark == SquareState.O) == first ? SquareState.O : SquareState.X ;
+		}
+
+		void reset(SquareState firstMark) {
+			this.firstMark = firstMark ;
+			this.moveCount = 0 ;
+			this.moves = 0 ;
+		}
+
+		void addMove(int cell) {
+			if (moveCount < Boards.CELLS) {
+				moves |= (long) cell << (moveCount * 4) ;
+				moveCount++ ;
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(sessionId).append(": ").append(firstMark).append(" first");
+			for (int i = 0 ; i < moveCount ; i++) {
+				builder.append(", ").append(getMark(i)).append(" at ").append(getLocation(i));
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Receives the events read from a journal file.
+	 */
+	public static interface Visitor {
+		public void visit(MoveEvent event) ;
+	}
+
+	// Receives the fields of each record read from a journal file
+	private static interface RecordHandler {
+		public void record(MoveEvent.Type type, long sessionId, int cell, SquareState mark) ;
+	}
+
+	private final Path directory ;
+	private final int snapshotInterval ;
+	private final boolean archive ;
+	private final Map<Long, Session> recoveredSessions ;
+
+	private final BlockingQueue<MoveEvent> queue ;
+	private final Thread writer ;
+	private final Object durabilityLock = new Object();
+	private long appended ;
+	private long durable ;
+	private volatile IOException failure ;
+	private volatile boolean compactRequested ;
+	private volatile boolean closed ;
+
+	// state below is only accessed by the writer thread (after construction)
+	private final Map<Long, Session> sessions ;
+	private final ByteBuffer buffer ;
+	private final byte[] record ;
+	private final CRC32 crc ;
+	private FileChannel channel ;
+	private long generation ;
+	private long eventsSinceSnapshot ;
+
+	private MoveJournal(Path directory, int snapshotInterval, boolean archive) throws IOException {
+		this.directory = directory ;
+		this.snapshotInterval = snapshotInterval ;
+		this.archive = archive ;
+		this.sessions = new HashMap<>();
+		this.buffer = ByteBuffer.allocateDirect(Math.max(MAX_BATCH * RECORD_SIZE, 64 * 1024));
+		this.record = new byte[RECORD_SIZE];
+		this.crc = new CRC32();
+		this.queue = new LinkedBlockingQueue<>();
+
+		Files.createDirectories(directory);
+		recover();
+
+		Map<Long, Session> copy = new HashMap<>();
+		for (Session session : sessions.values()) {
+			copy.put(session.getSessionId(), new Session(session));
+		}
+		this.recoveredSessions = Collections.unmodifiableMap(copy);
+
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeEvents();
+			}
+		}, "MoveJournal writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Opens (creating if necessary) the journal in the specified directory, recovering any sessions recorded
+	 * in it, with the default snapshot interval.
+	 */
+	public static MoveJournal open(Path directory) throws IOException {
+		return open(directory, DEFAULT_SNAPSHOT_INTERVAL);
+	}
+
+	/**
+	 * Opens (creating if necessary) the journal in the specified directory, recovering any sessions recorded in it.
+	 * @param snapshotInterval number of events written between snapshots
+	 */
+	public static MoveJournal open(Path directory, int snapshotInterval) throws IOException {
+		return open(directory, snapshotInterval, false);
+	}
+
+	/**
+	 * Opens (creating if necessary) the journal in the specified directory, recovering any sessions recorded in it.
+	 * @param snapshotInterval number of events written between snapshots
+	 * @param archive if true, journals replaced by a snapshot are moved to the archive subdirectory (so the
+	 * complete history of every game can be read with {@link #read(Path, Visitor)}), rather than deleted
+	 */
+	public static MoveJournal open(Path directory, int snapshotInterval, boolean archive) throws IOException {
+		if (snapshotInterval < 1) {
+			throw new IllegalArgumentException("snapshotInterval must be at least one");
+		}
+		return new MoveJournal(directory, snapshotInterval, archive);
+	}
+
+	/**
+	 * The journal files in the specified journal directory, archived and current, oldest first. Reading
+	 * these in order gives every event recorded since archiving was enabled.
+	 */
+	public static List<Path> journalFiles(Path directory) throws IOException {
+		final List<Path> files = new ArrayList<>();
+		final Path archiveDirectory = directory.resolve(ARCHIVE_DIRECTORY);
+		if (Files.isDirectory(archiveDirectory)) {
+			files.addAll(sortedJournals(archiveDirectory));
+		}
+		files.addAll(sortedJournals(directory));
+		return files ;
+	}
+
+	/**
+	 * Reads the events in the specified journal file, stopping at the first invalid (e.g. torn) record.
+	 */
+	public static void read(Path journalFile, final Visitor visitor) throws IOException {
+		try (FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+			readRecords(journal, new CRC32(), new RecordHandler() {
+				@Override
+				public void record(MoveEvent.Type type, long sessionId, int cell, SquareState mark) {
+					switch (type) {
+					case MOVE:
+						visitor.visit(MoveEvent.move(sessionId, Boards.location(cell), mark));
+						break ;
+					case RESET:
+						visitor.visit(MoveEvent.reset(sessionId, mark));
+						break ;
+					case REMOVE:
+						visitor.visit(MoveEvent.remove(sessionId));
+						break ;
+					}
+				}
+			});
+		}
+	}
+
+	private static List<Path> sortedJournals(Path directory) throws IOException {
+		final List<Path> journals = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+			for (Path file : files) {
+				journals.add(file);
+			}
+		}
+		Collections.sort(journals, new Comparator<Path>() {
+			@Override
+			public int compare(Path p1, Path p2) {
+				return Long.compare(generationOf(p1), generationOf(p2));
+			}
+		});
+		return journals ;
+	}
+
+	private static long generationOf(Path journal) {
+		final String name = journal.getFileName().toString();
+		return Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()));
+	}
+
+	/**
+	 * The sessions that were live (i.e. not removed) when the journal was opened, keyed by session id.
+	 */
+	public Map<Long, Session> getRecoveredSessions() {
+		return recoveredSessions ;
+	}
+
+	/**
+	 * Appends an event to the journal. The event is written asynchronously.
+	 * @return the sequence number of the event, which can be passed to awaitDurable(...)
+	 * @throws IllegalStateException if the journal is closed, or writing to it has failed
+	 */
+	public long append(MoveEvent event) {
+		// checked under the lock so no event can be queued after close() has queued CLOSE
+		synchronized (durabilityLock) {
+			checkState();
+			queue.add(event);
+			return ++appended ;
+		}
+	}
+
+	/**
+	 * Blocks until the event with the specified sequence number (and all those before it) have been forced to disk.
+	 * @throws IOException if writing to the journal has failed
+	 */
+	public void awaitDurable(long sequence) throws IOException, InterruptedException {
+		synchronized (durabilityLock) {
+			while (durable < sequence) {
+				if (failure != null) {
+					throw new IOException("Journal write failed", failure);
+				}
+				if (closed && ! writer.isAlive()) {
+					throw new IOException("Journal closed before event "+sequence+" was written");
+				}
+				durabilityLock.wait(100);
+			}
+		}
+	}
+
+	/**
+	 * Blocks until every event appended so far has been forced to disk.
+	 */
+	public void sync() throws IOException, InterruptedException {
+		final long sequence ;
+		synchronized (durabilityLock) {
+			sequence = appended ;
+		}
+		awaitDurable(sequence);
+	}
+
+	/**
+	 * Asks the writer thread to write a snapshot and start a new journal after its current batch,
+	 * regardless of how many events have been written since the last snapshot.
+	 */
+	public void compact() {
+		compactRequested = true ;
+		// make sure the writer wakes up even if nothing else is appended:
+		queue.add(COMPACT);
+	}
+
+	/**
+	 * Writes all outstanding events and closes the journal.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (durabilityLock) {
+			if (closed) {
+				return ;
+			}
+			closed = true ;
+			queue.add(CLOSE);
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw new IOException("Journal write failed", failure);
+		}
+	}
+
+	private void checkState() {
+		if (closed) {
+			throw new IllegalStateException("Journal is closed");
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Journal write failed", failure);
+		}
+	}
+
+	// Recovery
+
+	private void recover() throws IOException {
+		generation = 0 ;
+		final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+		if (Files.exists(snapshot)) {
+			readSnapshot(snapshot);
+		}
+		Files.deleteIfExists(directory.resolve(SNAPSHOT_TEMP_FILE));
+		retireJournalsExcept(generation);
+
+		channel = FileChannel.open(journalFile(generation), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		final long validLength = replayJournal(channel);
+		// discard any torn record at the end, so new records follow the last valid one:
+		channel.truncate(validLength);
+		channel.position(validLength);
+		eventsSinceSnapshot = validLength / RECORD_SIZE ;
+	}
+
+	private void readSnapshot(Path snapshot) throws IOException {
+		final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+		if (data.remaining() < 20 || data.getInt() != SNAPSHOT_MAGIC) {
+			throw new IOException(snapshot + " is not a journal snapshot");
+		}
+		crc.reset();
+		crc.update(data.array(), 0, data.limit() - 4);
+		if ((int) crc.getValue() != data.getInt(data.limit() - 4)) {
+			throw new IOException(snapshot + " is corrupt");
+		}
+		generation = data.getLong();
+		final int count = data.getInt();
+		for (int i = 0 ; i < count ; i++) {
+			final long sessionId = data.getLong();
+			final SquareState firstMark = MARKS[data.get()];
+			final int moveCount = data.get();
+			final long moves = data.getLong();
+			sessions.put(sessionId, new Session(sessionId, firstMark, moveCount, moves));
+		}
+	}
+
+	private long replayJournal(FileChannel journal) throws IOException {
+		return readRecords(journal, crc, new RecordHandler() {
+			@Override
+			public void record(MoveEvent.Type type, long sessionId, int cell, SquareState mark) {
+				apply(type, sessionId, cell, mark);
+			}
+		});
+	}
+
+	// Reads valid records from the start of the journal; returns the length of the valid part of the file
+	private static long readRecords(FileChannel journal, CRC32 crc, RecordHandler handler) throws IOException {
+		final ByteBuffer data = ByteBuffer.allocate(RECORD_SIZE * MAX_BATCH * 4);
+		final byte[] bytes = data.array();
+		long position = 0 ;
+		journal.position(0);
+		while (journal.read(data) > 0) {
+			data.flip();
+			while (data.remaining() >= RECORD_SIZE) {
+				final int offset = data.position();
+				crc.reset();
+				crc.update(bytes, offset, 12);
+				if ((int) crc.getValue() != data.getInt(offset + 12)) {
+					return position ;
+				}
+				handler.record(TYPES[bytes[offset + 8]], data.getLong(offset), bytes[offset + 9], MARKS[bytes[offset + 10]]);
+				data.position(offset + RECORD_SIZE);
+				position += RECORD_SIZE ;
+			}
+			// keep any partial record for the next read; if the file ends with one, it is discarded
+			data.compact();
+		}
+		return position ;
+	}
+
+	private void apply(MoveEvent.Type type, long sessionId, int cell, SquareState mark) {
+		Session session = sessions.get(sessionId);
+		switch (type) {
+		case RESET:
+			if (session == null) {
+				sessions.put(sessionId, new Session(sessionId, mark, 0, 0L));
+			} else {
+				session.reset(mark);
+			}
+			break ;
+		case MOVE:
+			if (session == null) {
+				session = new Session(sessionId, mark, 0, 0L);
+				sessions.put(sessionId, session);
+			}
+			session.addMove(cell);
+			break ;
+		case REMOVE:
+			sessions.remove(sessionId);
+			break ;
+		}
+	}
+
+	// Writing
+
+	private void writeEvents() {
+		final List<MoveEvent> batch = new ArrayList<>(MAX_BATCH);
+		try {
+			boolean closing = false ;
+			while (! closing) {
+				batch.add(queue.take());
+				queue.drainTo(batch, MAX_BATCH - 1);
+
+				int written = 0 ;
+				buffer.clear();
+				for (MoveEvent event : batch) {
+					if (event == CLOSE) {
+						closing = true ;
+					} else if (event != COMPACT) {
+						encode(event);
+						buffer.put(record);
+						apply(event.getType(), event.getGameId(), event.getCell(), event.getMark());
+						written++ ;
+					}
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				if (written > 0) {
+					channel.force(false);
+				}
+				batch.clear();
+
+				synchronized (durabilityLock) {
+					durable += written ;
+					durabilityLock.notifyAll();
+				}
+
+				eventsSinceSnapshot += written ;
+				if (compactRequested || eventsSinceSnapshot >= snapshotInterval) {
+					compactRequested = false ;
+					writeSnapshot();
+				}
+			}
+			channel.close();
+		} catch (IOException e) {
+			failure = e ;
+		} catch (InterruptedException e) {
+			failure = new IOException("Journal writer interrupted", e);
+		} finally {
+			synchronized (durabilityLock) {
+				durabilityLock.notifyAll();
+			}
+		}
+	}
+
+	private void encode(MoveEvent event) {
+		final ByteBuffer fields = ByteBuffer.wrap(record);
+		fields.putLong(event.getGameId());
+		fields.put((byte) event.getType().ordinal());
+		fields.put((byte) event.getCell());
+		fields.put((byte) event.getMark().ordinal());
+		fields.put((byte) 0);
+		crc.reset();
+		crc.update(record, 0, 12);
+		fields.putInt((int) crc.getValue());
+	}
+
+	// Writes a snapshot of the current sessions as the next generation, then switches to a new, empty, journal.
+	private void writeSnapshot() throws IOException {
+		final long nextGeneration = generation + 1 ;
+		final ByteBuffer data = ByteBuffer.allocate(20 + sessions.size() * SESSION_SIZE + 4);
+		data.putInt(SNAPSHOT_MAGIC);
+		data.putLong(nextGeneration);
+		data.putInt(sessions.size());
+		for (Session session : sessions.values()) {
+			data.putLong(session.sessionId);
+			data.put((byte) session.firstMark.ordinal());
+			data.put((byte) session.moveCount);
+			data.putLong(session.moves);
+		}
+		crc.reset();
+		crc.update(data.array(), 0, data.position());
+		data.putInt((int) crc.getValue());
+		data.flip();
+
+		final Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (data.hasRemaining()) {
+				out.write(data);
+			}
+			out.force(true);
+		}
+		// once the snapshot is in place, recovery will only read the journal of the new generation:
+		Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		syncDirectory();
+
+		final FileChannel previous = channel ;
+		channel = FileChannel.open(journalFile(nextGeneration), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		previous.close();
+		retire(journalFile(generation));
+		generation = nextGeneration ;
+		eventsSinceSnapshot = 0 ;
+	}
+
+	// Makes the rename of the snapshot durable before the old journal is deleted. Not all platforms allow
+	// a directory to be opened (or forced); on those the rename is left to the file system.
+	private void syncDirectory() {
+		try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+			dir.force(true);
+		} catch (IOException e) {
+			// not supported on this platform
+		}
+	}
+
+	private Path journalFile(long generation) {
+		return directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+	}
+
+	private void retireJournalsExcept(long generation) throws IOException {
+		final Path current = journalFile(generation);
+		for (Path journal : sortedJournals(directory)) {
+			if (! journal.equals(current)) {
+				retire(journal);
+			}
+		}
+	}
+
+	// Deletes or archives a journal whose events are all in the snapshot
+	private void retire(Path journal) throws IOException {
+		if (archive) {
+			final Path archiveDirectory = Files.createDirectories(directory.resolve(ARCHIVE_DIRECTORY));
+			Files.move(journal, archiveDirectory.resolve(journal.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+		} else {
+			Files.deleteIfExists(journal);
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * A small neural network that evaluates board positions for search engines: given an encoding of a
+ * position, it returns a policy (a probability for each move) and a value (the expected result for the
+ * player to move, between -1 and 1).
+ * <p>
+ * The network has a single fully-connected hidden layer with ReLU activations, feeding a softmax policy
+ * head and a tanh value head. It is sized by the caller, so it can be used for boards of any size:
+ * typically the inputs are one plane of the player to move's stones followed by one of the opponent's,
+ * and there is one policy output per square.
+ * <p>
+ * Inference runs on the CPU over primitive float arrays. Positions are evaluated in batches, so a search
+ * can score many leaves per call, and working storage is allocated when the evaluator is created, so
+ * evaluate(...) never allocates. An evaluator is therefore not thread safe: use {@link #copy()} to give
+ * each thread its own (the weights are shared).
+ * <p>
+ * Weights file format (little-endian, to match files written by numpy): int magic, int version, int inputs,
+ * int hidden, int policy size, then as floats the hidden weights (inputs rows of hidden, i.e. the matrix W in
+ * x @ W), hidden biases, policy weights (hidden rows of policy size), policy biases, value weights (hidden) and
+ * value bias. Weights are stored, and used, one input at a time, so the evaluator accumulates whole rows
+ * (which the JIT compiler vectorizes) and skips the rows for zero inputs.
+ */
+public class NeuralEvaluator {
+
+	private static final int MAGIC = 0x5454544E ; // "TTTN"
+	private static final int VERSION = 1 ;
+
+	private final int inputs ;
+	private final int hidden ;
+	private final int policySize ;
+
+	private final float[] hiddenWeights ;
+	private final float[] hiddenBiases ;
+	private final float[] policyWeights ;
+	private final float[] policyBiases ;
+	private final float[] valueWeights ;
+	private final float valueBias ;
+
+	// hidden layer activations for the position being evaluated
+	private final float[] activations ;
+
+	private NeuralEvaluator(int inputs, int hidden, int policySize, float[] hiddenWeights, float[] hiddenBiases,
+			float[] policyWeights, float[] policyBiases, float[] valueWeights, float valueBias) {
+		this.inputs = inputs ;
+		this.hidden = hidden ;
+		this.policySize = policySize ;
+		this.hiddenWeights = hiddenWeights ;
+		this.hiddenBiases = hiddenBiases ;
+		this.policyWeights = policyWeights ;
+		this.policyBiases = policyBiases ;
+		this.valueWeights = valueWeights ;
+		this.valueBias = valueBias ;
+		this.activations = new float[hidden];
+	}
+
+	/**
+	 * Loads the weights from the specified file.
+	 */
+	public static NeuralEvaluator load(Path file) throws IOException {
+		final ByteBuffer data ;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (data.remaining() < 20 || data.getInt() != MAGIC || data.getInt() != VERSION) {
+			throw new IOException(file + " is not a weights file");
+		}
+		final int inputs = data.getInt();
+		final int hidden = data.getInt();
+		final int policySize = data.getInt();
+		final long expected = 20 + 4L * ((long) hidden * inputs + hidden + (long) policySize * hidden + policySize + hidden + 1);
+		if (inputs < 1 || hidden < 1 || policySize < 1 || data.capacity() != expected) {
+			throw new IOException(file + " has the wrong size for a "+inputs+"-"+hidden+"-"+policySize+" network");
+		}
+		final float[] hiddenWeights = readFloats(data, inputs * hidden);
+		final float[] hiddenBiases = readFloats(data, hidden);
+		final float[] policyWeights = readFloats(data, hidden * policySize);
+		final float[] policyBiases = readFloats(data, policySize);
+		final float[] valueWeights = readFloats(data, hidden);
+		final float valueBias = data.getFloat();
+		return new NeuralEvaluator(inputs, hidden, policySize, hiddenWeights, hiddenBiases, policyWeights, policyBiases, valueWeights, valueBias);
+	}
+
+	/**
+	 * Creates a network with small random weights (e.g. as a starting point for training, or for benchmarking).
+	 */
+	public static NeuralEvaluator withRandomWeights(int inputs, int hidden, int policySize, long seed) {
+		final Random random = new Random(seed);
+		final float hiddenScale = (float) Math.sqrt(2.0 / inputs);
+		final float outputScale = (float) Math.sqrt(1.0 / hidden);
+		return new NeuralEvaluator(inputs, hidden, policySize, randomFloats(random, inputs * hidden, hiddenScale),
+				new float[hidden], randomFloats(random, hidden * policySize, outputScale), new float[policySize],
+				randomFloats(random, hidden, outputScale), 0f);
+	}
+
+	/**
+	 * An evaluator sharing this evaluator's weights, with its own working storage.
+	 */
+	public NeuralEvaluator copy() {
+		return new NeuralEvaluator(inputs, hidden, policySize, hiddenWeights, hiddenBiases, policyWeights, policyBiases, valueWeights, valueBias);
+	}
+
+	/**
+	 * Writes the weights to the specified file, in the format read by load(...).
+	 */
+	public void save(Path file) throws IOException {
+		final ByteBuffer data = ByteBuffer.allocate(20 + 4 * (hiddenWeights.length + hidden + policyWeights.length + policySize + hidden + 1))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		data.putInt(MAGIC).putInt(VERSION).putInt(inputs).putInt(hidden).putInt(policySize);
+		for (float[] floats : new float[][] {hiddenWeights, hiddenBiases, policyWeights, policyBiases, valueWeights}) {
+			for (float f : floats) {
+				data.putFloat(f);
+			}
+		}
+		data.putFloat(valueBias);
+		data.flip();
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (data.hasRemaining()) {
+				out.write(data);
+			}
+		}
+	}
+
+	public int getInputs() {
+		return inputs ;
+	}
+
+	public int getPolicySize() {
+		return policySize ;
+	}
+
+	/**
+	 * Evaluates a batch of positions.
+	 * @param input batchSize encoded positions, each of getInputs() values, one after another
+	 * @param batchSize number of positions
+	 * @param policy receives batchSize policies, each of getPolicySize() probabilities summing to one
+	 * @param value receives batchSize values, each between -1 and 1, for the player to move
+	 * @throws IllegalArgumentException if an array is too small for the batch
+	 */
+	public void evaluate(float[] input, int batchSize, float[] policy, float[] value) {
+		if (input.length < batchSize * inputs || policy.length < batchSize * policySize || value.length < batchSize) {
+			throw new IllegalArgumentException("Arrays are too small for a batch of "+batchSize);
+		}
+		for (int b = 0 ; b < batchSize ; b++) {
+			final int inputOffset = b * inputs ;
+			System.arraycopy(hiddenBiases, 0, activations, 0, hidden);
+			for (int i = 0 ; i < inputs ; i++) {
+				final float x = input[inputOffset + i];
+				// board encodings are mostly zeros, so this skips most of the work
+				if (x != 0) {
+					addScaled(activations, 0, hiddenWeights, i * hidden, x, hidden);
+				}
+			}
+			float v = valueBias ;
+			for (int h = 0 ; h < hidden ; h++) {
+				final float a = activations[h];
+				final float relu = a > 0 ? a : 0 ;
+				activations[h] = relu ;
+				v += relu * valueWeights[h] ;
+			}
+			value[b] = (float) Math.tanh(v);
+
+			final int policyOffset = b * policySize ;
+			System.arraycopy(policyBiases, 0, policy, policyOffset, policySize);
+			for (int h = 0 ; h < hidden ; h++) {
+				final float a = activations[h];
+				if (a != 0) {
+					addScaled(policy, policyOffset, policyWeights, h * policySize, a, policySize);
+				}
+			}
+			float max = Float.NEGATIVE_INFINITY ;
+			for (int p = 0 ; p < policySize ; p++) {
+				max = Math.max(max, policy[policyOffset + p]);
+			}
+			float total = 0 ;
+			for (int p = 0 ; p < policySize ; p++) {
+				final float e = (float) Math.exp(policy[policyOffset + p] - max);
+				policy[policyOffset + p] = e ;
+				total += e ;
+			}
+			final float scale = 1 / total ;
+			for (int p = 0 ; p < policySize ; p++) {
+				policy[policyOffset + p] *= scale ;
+			}
+		}
+	}
+
+	// target[targetOffset + j] += scale * row[rowOffset + j] for j < length. The iterations are independent,
+	// so the JIT compiler can vectorize this loop (unlike a dot product, whose float sum must be kept in order).
+	private static void addScaled(float[] target, int targetOffset, float[] row, int rowOffset, float scale, int length) {
+		for (int j = 0 ; j < length ; j++) {
+			target[targetOffset + j] += scale * row[rowOffset + j];
+		}
+	}
+
+	private static float[] readFloats(ByteBuffer data, int count) {
+		final float[] floats = new float[count];
+		data.asFloatBuffer().get(floats);
+		data.position(data.position() + 4 * count);
+		return floats ;
+	}
+
+	private static float[] randomFloats(Random random, int count, float scale) {
+		final float[] floats = new float[count];
+		for (int i = 0 ; i < count ; i++) {
+			floats[i] = (float) random.nextGaussian() * scale ;
+		}
+		return floats ;
+	}
+
+	/**
+	 * Benchmarks batched evaluation on a single thread, for a network sized for a square board.
+	 * Arguments (all optional): board size (default 15), hidden units (default 256), batch size (default 64), seconds (default 5).
+	 */
+	public static void main(String[] args) throws IOException {
+		final int boardSize = args.length > 0 ? Integer.parseInt(args[0]) : 15 ;
+		final int hidden = args.length > 1 ? Integer.parseInt(args[1]) : 256 ;
+		final int batch = args.length > 2 ? Integer.parseInt(args[2]) : 64 ;
+		final int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5 ;
+		final int cells = boardSize * boardSize ;
+
+		NeuralEvaluator evaluator = withRandomWeights(2 * cells, hidden, cells, 1);
+		// round trip through a file, to exercise loading:
+		final Path file = Paths.get(System.getProperty("java.io.tmpdir"), "tictactoe-benchmark-weights.bin");
+		evaluator.save(file);
+		evaluator = load(file);
+
+		final Random random = new Random(2);
+		final float[] input = new float[batch * 2 * cells];
+		for (int i = 0 ; i < input.length ; i++) {
+			input[i] = random.nextInt(3) == 0 ? 1 : 0 ;
+		}
+		final float[] policy = new float[batch * cells];
+		final float[] value = new float[batch];
+
+		// warm up, so the measurement is of compiled code
+		final long warmUpEnd = System.nanoTime() + 1_000_000_000L ;
+		while (System.nanoTime() < warmUpEnd) {
+			evaluator.evaluate(input, batch, policy, value);
+		}
+		long evaluations = 0 ;
+		final long start = System.nanoTime();
+		final long end = start + seconds * 1_000_000_000L ;
+		while (System.nanoTime() < end) {
+			evaluator.evaluate(input, batch, policy, value);
+			evaluations += batch ;
+		}
+		final double elapsed = (System.nanoTime() - start) / 1e9 ;
+		System.out.printf("%dx%d board, %d-%d-%d network, batch %d: %.0f evaluations per second on one core%n",
+				boardSize, boardSize, 2 * cells, hidden, cells, batch, evaluations / elapsed);
+	}
+}
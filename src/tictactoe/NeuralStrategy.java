@@ -0,0 +1,125 @@
+package tictactoe;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+
+/**
+ * Chooses moves using a {@link NeuralEvaluator}: the current position and every position reachable in one
+ * move are evaluated in a single batch, and the move is chosen by the value of the resulting position to the
+ * opponent, with the policy for the current position used as a small bonus (so it breaks ties). A move that
+ * finishes the game is scored exactly rather than evaluated.
+ * <p>
+ * The evaluator must take 18 inputs (the squares of the player to move, then those of the opponent, each
+ * numbered row * 3 + column) and have 9 policy outputs. Each thread using the strategy gets its own copy of
+ * the evaluator and its own buffers, so the strategy may be shared (e.g. in a {@link Tournament}), and
+ * choosing a move does not allocate beyond the Location returned.
+ */
+public class NeuralStrategy implements MoveChoosingStrategy {
+
+	static final int INPUTS = 2 * Boards.CELLS ;
+	private static final int BATCH = Boards.CELLS + 1 ;
+
+	private final double policyWeight ;
+	private final ThreadLocal<Workspace> workspace ;
+
+	/**
+	 * @param evaluator an evaluator with 18 inputs and 9 policy outputs
+	 * @param policyWeight how much the policy for the current position adds to the score of each move
+	 */
+	public NeuralStrategy(final NeuralEvaluator evaluator, double policyWeight) {
+		if (evaluator.getInputs() != INPUTS || evaluator.getPolicySize() != Boards.CELLS) {
+			throw new IllegalArgumentException("Evaluator must have "+INPUTS+" inputs and "+Boards.CELLS+" policy outputs");
+		}
+		this.policyWeight = policyWeight ;
+		this.workspace = new ThreadLocal<Workspace>() {
+			@Override
+			protected Workspace initialValue() {
+				return new Workspace(evaluator.copy());
+			}
+		};
+	}
+
+	public NeuralStrategy(NeuralEvaluator evaluator) {
+		this(evaluator, 0.1);
+	}
+
+	@Override
+	public Location chooseMove(Game gameState) {
+		final Player current = gameState.getCurrentPlayer();
+		if (current == null) {
+			return null ;
+		}
+		final SquareState mark = current == gameState.getXPlayer() ? SquareState.X : SquareState.O ;
+		final SquareState opponent = mark == SquareState.X ? SquareState.O : SquareState.X ;
+		final int board = Boards.pack(gameState);
+		if (Boards.emptyCells(board) == 0) {
+			return null ;
+		}
+		final Workspace w = workspace.get();
+
+		// batch entry 0 is the current position, followed by the non-terminal positions after each move
+		encode(board, mark, w.input, 0);
+		int batchSize = 1 ;
+		for (int cell = 0 ; cell < Boards.CELLS ; cell++) {
+			w.batchIndex[cell] = -1 ;
+			if (Boards.getSquare(board, cell) != SquareState.EMPTY) {
+				continue ;
+			}
+			final int child = Boards.withMark(board, cell, mark);
+			final GameStatus status = Boards.status(child);
+			if (status == GameStatus.OPEN) {
+				encode(child, opponent, w.input, batchSize * INPUTS);
+				w.batchIndex[cell] = batchSize++ ;
+			} else if (status == GameStatus.DRAWN) {
+				w.terminalScore[cell] = 0 ;
+			} else {
+				// only the player moving can have completed a line
+				w.terminalScore[cell] = 1 ;
+			}
+		}
+		w.evaluator.evaluate(w.input, batchSize, w.policy, w.value);
+
+		int bestCell = -1 ;
+		double bestScore = Double.NEGATIVE_INFINITY ;
+		for (int cell = 0 ; cell < Boards.CELLS ; cell++) {
+			if (Boards.getSquare(board, cell) != SquareState.EMPTY) {
+				continue ;
+			}
+			final int index = w.batchIndex[cell];
+			final double value = index < 0 ? w.terminalScore[cell] : -w.value[index];
+			final double score = value + policyWeight * w.policy[cell] ;
+			if (score > bestScore) {
+				bestScore = score ;
+				bestCell = cell ;
+			}
+		}
+		return Boards.location(bestCell);
+	}
+
+	/**
+	 * Encodes a packed board for the evaluator, from the point of view of the specified player to move:
+	 * the first nine inputs are that player's squares, the next nine the opponent's.
+	 */
+	static void encode(int board, SquareState toMove, float[] input, int offset) {
+		final int own = toMove == SquareState.X ? Boards.xCells(board) : Boards.oCells(board);
+		final int other = toMove == SquareState.X ? Boards.oCells(board) : Boards.xCells(board);
+		for (int cell = 0 ; cell < Boards.CELLS ; cell++) {
+			input[offset + cell] = (own >>> cell) & 1 ;
+			input[offset + Boards.CELLS + cell] = (other >>> cell) & 1 ;
+		}
+	}
+
+	// Per-thread evaluator and buffers
+	private static class Workspace {
+		final NeuralEvaluator evaluator ;
+		final float[] input = new float[BATCH * INPUTS];
+		final float[] policy = new float[BATCH * Boards.CELLS];
+		final float[] value = new float[BATCH];
+		final int[] batchIndex = new int[Boards.CELLS];
+		final double[] terminalScore = new double[Boards.CELLS];
+
+		Workspace(NeuralEvaluator evaluator) {
+			this.evaluator = evaluator ;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import tictactoe.Game.SquareState;
+
+/**
+ * A read-only book of moves, keyed by position, built from archived games by {@link OpeningBookBuilder}.
+ * <p>
+ * Positions are stored in canonical form (see {@link Boards#canonicalSymmetry(int)}), so a single entry
+ * covers all the positions equivalent to it by rotation and reflection. The book file is a sorted array of
+ * fixed-size entries which is memory-mapped and binary-searched, so opening a book costs almost nothing and
+ * a probe touches only a handful of pages. Probing is thread safe.
+ * <p>
+ * File format: a header of magic number, version and entry count (ints), followed by that many entries in
+ * increasing order of key, each an int key (canonical board, plus 1 &lt;&lt; 18 if X is to move), a byte
+ * holding the canonical cell of the book move, an unused byte, and an unsigned short count of the games
+ * the move was played in.
+ */
+public class OpeningBook {
+
+	static final int MAGIC = 0x54545442 ; // "TTTB"
+	static final int VERSION = 1 ;
+	static final int HEADER_SIZE = 12 ;
+	static final int ENTRY_SIZE = 8 ;
+	static final int X_TO_MOVE = 1 << 18 ;
+
+	private final MappedByteBuffer data ;
+	private final int size ;
+
+	private OpeningBook(MappedByteBuffer data) throws IOException {
+		this.data = data ;
+		if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+			throw new IOException("Not an opening book");
+		}
+		this.size = data.getInt(8);
+		if (data.capacity() < HEADER_SIZE + (long) size * ENTRY_SIZE) {
+			throw new IOException("Opening book is truncated");
+		}
+	}
+
+	/**
+	 * Opens (and memory-maps) the specified book file.
+	 */
+	public static OpeningBook open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Number of positions in the book.
+	 */
+	public int size() {
+		return size ;
+	}
+
+	/**
+	 * The key for a canonical board with the specified mark to move.
+	 */
+	static int key(int canonicalBoard, SquareState toMove) {
+		return toMove == SquareState.X ? canonicalBoard | X_TO_MOVE : canonicalBoard ;
+	}
+
+	/**
+	 * The book move (as a canonical cell) for the specified key, or -1 if the position is not in the book.
+	 */
+	int probe(int key) {
+		int low = 0 ;
+		int high = size - 1 ;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1 ;
+			final int entry = HEADER_SIZE + mid * ENTRY_SIZE ;
+			final int midKey = data.getInt(entry);
+			if (midKey < key) {
+				low = mid + 1 ;
+			} else if (midKey > key) {
+				high = mid - 1 ;
+			} else {
+				return data.get(entry + 4);
+			}
+		}
+		return -1 ;
+	}
+
+	/**
+	 * The book move for the current position of the specified game, or null if the position is not in the
+	 * book (or the game is over).
+	 */
+	public Location probe(Game game) {
+		final Player current = game.getCurrentPlayer();
+		if (current == null) {
+			return null ;
+		}
+		final SquareState toMove = current == game.getXPlayer() ? SquareState.X : SquareState.O ;
+		final int board = Boards.pack(game);
+		final int symmetry = Boards.canonicalSymmetry(board);
+		final int canonicalCell = probe(key(Boards.transform(board, symmetry), toMove));
+		if (canonicalCell < 0) {
+			return null ;
+		}
+		final int cell = Boards.SYMMETRIES[Boards.inverse(symmetry)][canonicalCell];
+		if (Boards.getSquare(board, cell) != SquareState.EMPTY) {
+			// can only happen with a corrupt book
+			return null ;
+		}
+		return Boards.location(cell);
+	}
+
+	// Writes a single entry; used by OpeningBookBuilder
+	static void putEntry(ByteBuffer buffer, int key, int canonicalCell, int games) {
+		buffer.putInt(key);
+		buffer.put((byte) canonicalCell);
+		buffer.put((byte) 0);
+		buffer.putShort((short) Math.min(games, 0xFFFF));
+	}
+}
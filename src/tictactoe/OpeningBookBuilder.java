@@ -0,0 +1,218 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+
+/**
+ * Builds an {@link OpeningBook} from archived games.
+ * <p>
+ * Games are added either directly, or as the stream of events read from archived journals (see
+ * {@link MoveJournal#read(Path, MoveJournal.Visitor)}); only games played through to a result are used.
+ * For every position in those games (reduced to canonical form, so symmetrical positions are combined),
+ * the builder counts how often each move was played and the average score it led to for the player making
+ * it. A position is written to the book only if one of its moves was played in at least minGames games
+ * and scored at least minScore; the book move is the best-scoring such move.
+ */
+public class OpeningBookBuilder implements MoveJournal.Visitor {
+
+	private final int minGames ;
+	private final double minScore ;
+
+	// games in progress, by session id: first mark (index 0) followed by the cells played
+	private final Map<Long, int[]> inProgress ;
+	// statistics for each (position key, canonical cell): number of games and total score, in half points
+	private final Map<Long, int[]> moveStatistics ;
+	private int gamesAdded ;
+
+	/**
+	 * @param minGames the minimum number of games a move must have been played in to be used
+	 * @param minScore the minimum average score (1 for a win, 1/2 for a draw) for the player making the move
+	 */
+	public OpeningBookBuilder(int minGames, double minScore) {
+		this.minGames = minGames ;
+		this.minScore = minScore ;
+		this.inProgress = new HashMap<>();
+		this.moveStatistics = new HashMap<>();
+	}
+
+	/**
+	 * Number of complete games added to the builder.
+	 */
+	public int getGamesAdded() {
+		return gamesAdded ;
+	}
+
+	/**
+	 * Adds a complete game.
+	 * @param firstMark the mark that moved first
+	 * @param cells the cell indexes (row * 3 + column) played, in order
+	 * @throws IllegalArgumentException if the moves are not legal, or do not finish the game
+	 */
+	public void addGame(SquareState firstMark, int... cells) {
+		int board = 0 ;
+		SquareState mark = firstMark ;
+		for (int cell : cells) {
+			if (Boards.status(board) != GameStatus.OPEN || Boards.getSquare(board, cell) != SquareState.EMPTY) {
+				throw new IllegalArgumentException("Illegal move at cell "+cell);
+			}
+			board = Boards.withMark(board, cell, mark);
+			mark = opponentOf(mark);
+		}
+		final GameStatus result = Boards.status(board);
+		if (result == GameStatus.OPEN) {
+			throw new IllegalArgumentException("Game is not finished");
+		}
+
+		board = 0 ;
+		mark = firstMark ;
+		for (int cell : cells) {
+			final int symmetry = Boards.canonicalSymmetry(board);
+			final int key = OpeningBook.key(Boards.transform(board, symmetry), mark);
+			// equivalent moves must be counted together, even if the position is symmetrical
+			final int canonicalCell = Boards.canonicalCell(board, cell);
+			final long statisticsKey = ((long) key << 4) | canonicalCell ;
+			int[] statistics = moveStatistics.get(statisticsKey);
+			if (statistics == null) {
+				statistics = new int[2];
+				moveStatistics.put(statisticsKey, statistics);
+			}
+			statistics[0]++ ;
+			statistics[1] += halfPoints(result, mark);
+
+			board = Boards.withMark(board, cell, mark);
+			mark = opponentOf(mark);
+		}
+		gamesAdded++ ;
+	}
+
+	/**
+	 * Adds an event read from a journal. Games are added when they finish; games that are reset or removed
+	 * before finishing, or whose start is not in the events read, are ignored.
+	 */
+	@Override
+	public void visit(MoveEvent event) {
+		final Long sessionId = event.getGameId();
+		switch (event.getType()) {
+		case RESET:
+			inProgress.put(sessionId, new int[] {event.getMark().ordinal()});
+			break ;
+		case REMOVE:
+			inProgress.remove(sessionId);
+			break ;
+		case MOVE:
+			final int[] game = inProgress.get(sessionId);
+			if (game == null) {
+				return ;
+			}
+			final int[] extended = new int[game.length + 1];
+			System.arraycopy(game, 0, extended, 0, game.length);
+			extended[game.length] = event.getCell();
+			if (finished(extended)) {
+				inProgress.remove(sessionId);
+				final int[] cells = new int[extended.length - 1];
+				System.arraycopy(extended, 1, cells, 0, cells.length);
+				try {
+					addGame(SquareState.values()[extended[0]], cells);
+				} catch (IllegalArgumentException e) {
+					// inconsistent record; skip the game
+				}
+			} else {
+				inProgress.put(sessionId, extended);
+			}
+			break ;
+		}
+	}
+
+	private static boolean finished(int[] game) {
+		int board = 0 ;
+		SquareState mark = SquareState.values()[game[0]];
+		for (int i = 1 ; i < game.length ; i++) {
+			board = Boards.withMark(board, game[i], mark);
+			mark = opponentOf(mark);
+		}
+		return Boards.status(board) != GameStatus.OPEN ;
+	}
+
+	/**
+	 * Writes the book to the specified file, replacing any existing file.
+	 * @return the number of positions written
+	 */
+	public int write(Path file) throws IOException {
+		// best qualifying move for each position, as {canonical cell, games, half points}; sorted by position key
+		final TreeMap<Integer, int[]> book = new TreeMap<>();
+		for (Map.Entry<Long, int[]> entry : moveStatistics.entrySet()) {
+			final int[] statistics = entry.getValue();
+			final double score = statistics[1] / (2.0 * statistics[0]);
+			if (statistics[0] < minGames || score < minScore) {
+				continue ;
+			}
+			final int key = (int) (entry.getKey() >>> 4);
+			final int cell = (int) (entry.getKey() & 0xF);
+			final int[] best = book.get(key);
+			if (best == null || score > best[2] / (2.0 * best[1]) || (score == best[2] / (2.0 * best[1]) && statistics[0] > best[1])) {
+				book.put(key, new int[] {cell, statistics[0], statistics[1]});
+			}
+		}
+
+		final ByteBuffer data = ByteBuffer.allocate(OpeningBook.HEADER_SIZE + book.size() * OpeningBook.ENTRY_SIZE);
+		data.putInt(OpeningBook.MAGIC);
+		data.putInt(OpeningBook.VERSION);
+		data.putInt(book.size());
+		for (Map.Entry<Integer, int[]> entry : book.entrySet()) {
+			OpeningBook.putEntry(data, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+		}
+		data.flip();
+
+		final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (data.hasRemaining()) {
+				out.write(data);
+			}
+			out.force(true);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return book.size();
+	}
+
+	private static int halfPoints(GameStatus result, SquareState mark) {
+		if (result == GameStatus.DRAWN) {
+			return 1 ;
+		}
+		return (result == GameStatus.O_WON) == (mark == SquareState.O) ? 2 : 0 ;
+	}
+
+	private static SquareState opponentOf(SquareState mark) {
+		return mark == SquareState.O ? SquareState.X : SquareState.O ;
+	}
+
+	/**
+	 * Builds a book from the games in a journal directory (see {@link MoveJournal#journalFiles(Path)}).
+	 * Arguments: journal directory, book file, and optionally minimum games (default 10) and minimum score (default 0.5).
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: OpeningBookBuilder journalDirectory bookFile [minGames [minScore]]");
+			return ;
+		}
+		final int minGames = args.length > 2 ? Integer.parseInt(args[2]) : 10 ;
+		final double minScore = args.length > 3 ? Double.parseDouble(args[3]) : 0.5 ;
+		final OpeningBookBuilder builder = new OpeningBookBuilder(minGames, minScore);
+		for (Path journal : MoveJournal.journalFiles(Paths.get(args[0]))) {
+			MoveJournal.read(journal, builder);
+		}
+		final int positions = builder.write(Paths.get(args[1]));
+		System.out.printf("%d positions from %d games written to %s%n", positions, builder.getGamesAdded(), args[1]);
+	}
+}
@@ -0,0 +1,73 @@
+package tictactoe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates a MoveChoosingStrategy with an {@link OpeningBook}: the book is probed first, and the wrapped
+ * strategy is only asked to choose a move for positions that are not in the book.
+ * <p>
+ * The hit rate is recorded, along with the time the wrapped strategy takes on a miss, from which the
+ * engine time saved by the book is estimated (hits multiplied by the mean time per miss). Book hits are also
+ * counted in {@link Metrics} (separately from the transposition table hits of search engines).
+ */
+public class OpeningBookStrategy implements MoveChoosingStrategy {
+
+	private final OpeningBook book ;
+	private final MoveChoosingStrategy fallback ;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong missNanos = new AtomicLong();
+
+	public OpeningBookStrategy(OpeningBook book, MoveChoosingStrategy fallback) {
+		this.book = book ;
+		this.fallback = fallback ;
+	}
+
+	@Override
+	public Location chooseMove(Game gameState) {
+		final Location bookMove = book.probe(gameState);
+		if (bookMove != null) {
+			hits.incrementAndGet();
+			Metrics.getInstance().addBookHits(1);
+			return bookMove ;
+		}
+		final long start = System.nanoTime();
+		final Location move = fallback.chooseMove(gameState);
+		missNanos.addAndGet(System.nanoTime() - start);
+		misses.incrementAndGet();
+		return move ;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Proportion of moves found in the book.
+	 */
+	public double getHitRate() {
+		final long h = hits.get();
+		final long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total ;
+	}
+
+	/**
+	 * Estimate of the time the wrapped strategy would have spent choosing the moves found in the book.
+	 */
+	public long getEstimatedTimeSavedNanos() {
+		final long m = misses.get();
+		return m == 0 ? 0 : hits.get() * (missNanos.get() / m) ;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Opening book: %d hits, %d misses (hit rate %.1f%%), about %dms engine time saved",
+				getHits(), getMisses(), 100 * getHitRate(), TimeUnit.NANOSECONDS.toMillis(getEstimatedTimeSavedNanos()));
+	}
+}
@@ -0,0 +1,400 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+
+/**
+ * Game-tree enumeration ("perft"): counts every position reachable from the start of a game, ply by ply, to
+ * a given depth, along with the finished games by result. The counts for the 3x3 game are known exactly, so
+ * they check that move generation and win/draw detection are correct; the time taken measures how fast
+ * positions can be generated.
+ * <p>
+ * Three implementations of the game can be enumerated: packed boards (see {@link Boards}), {@link Game}
+ * itself, and {@link UltimateGame}. Game has no undo, so it is enumerated by replaying the moves to each
+ * position into a single instance; this is slow, but checks the game status computed by the model
+ * (including its bindings) against the packed board at every position. Each enumeration is split across
+ * a pool of threads by root move.
+ * <p>
+ * O always moves first, so "O won" counts the games won by the first player.
+ */
+public class Perft {
+
+	/**
+	 * Number of positions at each ply of the full 3x3 game tree.
+	 */
+	static final long[] NODES_PER_PLY = {1, 9, 72, 504, 3024, 15120, 54720, 148176, 200448, 127872};
+
+	/**
+	 * Number of complete 3x3 games, and the number ending in each result.
+	 */
+	static final long COMPLETE_GAMES = 255_168 ;
+	static final long FIRST_PLAYER_WINS = 131_184 ;
+	static final long SECOND_PLAYER_WINS = 77_904 ;
+	static final long DRAWS = 46_080 ;
+
+	/**
+	 * Number of positions at each of the first plies of the Ultimate Tic-Tac-Toe game tree (no game can
+	 * finish this early).
+	 */
+	static final long[] ULTIMATE_NODES_PER_PLY = {1, 81, 720, 6336, 55080, 473256, 4020960, 33782544};
+
+	private static final GameStatus[] RESULTS = {GameStatus.O_WON, GameStatus.X_WON, GameStatus.DRAWN};
+
+	private Perft() {}
+
+	/**
+	 * Counts from an enumeration: positions and finished games at each ply, and the time taken.
+	 */
+	public static class Result {
+		private final long[] nodes ;
+		// finished games at each ply, indexed by ply then GameStatus ordinal
+		private final long[][] finished ;
+		private long elapsedNanos ;
+
+		Result(int depth) {
+			this.nodes = new long[depth + 1];
+			this.finished = new long[depth + 1][GameStatus.values().length];
+		}
+
+		void add(Result other) {
+			for (int ply = 0 ; ply < nodes.length ; ply++) {
+				nodes[ply] += other.nodes[ply];
+				for (int status = 0 ; status < finished[ply].length ; status++) {
+					finished[ply][status] += other.finished[ply][status];
+				}
+			}
+		}
+
+		void count(int ply, GameStatus status) {
+			nodes[ply]++ ;
+			if (status != GameStatus.OPEN) {
+				finished[ply][status.ordinal()]++ ;
+			}
+		}
+
+		public int getDepth() {
+			return nodes.length - 1 ;
+		}
+
+		/**
+		 * Number of positions at the specified ply (0 being the starting position).
+		 */
+		public long getNodes(int ply) {
+			return nodes[ply];
+		}
+
+		public long getTotalNodes() {
+			long total = 0 ;
+			for (long n : nodes) {
+				total += n ;
+			}
+			return total ;
+		}
+
+		/**
+		 * Number of games finishing at the specified ply with the specified result.
+		 */
+		public long getFinishedGames(int ply, GameStatus result) {
+			return finished[ply][result.ordinal()];
+		}
+
+		/**
+		 * Number of games finishing (at any ply up to the depth) with the specified result.
+		 */
+		public long getFinishedGames(GameStatus result) {
+			long total = 0 ;
+			for (long[] counts : finished) {
+				total += counts[result.ordinal()];
+			}
+			return total ;
+		}
+
+		/**
+		 * Number of games finishing at any ply up to the depth, with any result.
+		 */
+		public long getFinishedGames() {
+			long total = 0 ;
+			for (GameStatus result : RESULTS) {
+				total += getFinishedGames(result);
+			}
+			return total ;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos ;
+		}
+
+		public double getNodesPerSecond() {
+			return elapsedNanos == 0 ? 0 : getTotalNodes() * 1e9 / elapsedNanos ;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder(String.format("%4s %12s %12s %12s %12s%n", "ply", "nodes", RESULTS[0], RESULTS[1], RESULTS[2]));
+			for (int ply = 0 ; ply < nodes.length ; ply++) {
+				sb.append(String.format("%4d %12d %12d %12d %12d%n", ply, nodes[ply],
+						finished[ply][RESULTS[0].ordinal()], finished[ply][RESULTS[1].ordinal()], finished[ply][RESULTS[2].ordinal()]));
+			}
+			sb.append(String.format("%4s %12d %12d %12d %12d%n", "all", getTotalNodes(),
+					getFinishedGames(RESULTS[0]), getFinishedGames(RESULTS[1]), getFinishedGames(RESULTS[2])));
+			sb.append(String.format("%d finished games; %.1f ms, %.0f nodes per second",
+					getFinishedGames(), elapsedNanos / 1e6, getNodesPerSecond()));
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Checks a 3x3 enumeration (of packed boards or of Game) against the known counts.
+	 * @return a description of each count that differs from the known value; empty if all are correct
+	 */
+	public static List<String> verify(Result result) {
+		final List<String> errors = new ArrayList<>();
+		for (int ply = 0 ; ply <= result.getDepth() ; ply++) {
+			// the tree ends at ply 9
+			checkCount(errors, "ply "+ply+" nodes", result.getNodes(ply), ply < NODES_PER_PLY.length ? NODES_PER_PLY[ply] : 0);
+		}
+		if (result.getDepth() >= NODES_PER_PLY.length - 1) {
+			checkCount(errors, "complete games", result.getFinishedGames(), COMPLETE_GAMES);
+			checkCount(errors, "first player wins", result.getFinishedGames(GameStatus.O_WON), FIRST_PLAYER_WINS);
+			checkCount(errors, "second player wins", result.getFinishedGames(GameStatus.X_WON), SECOND_PLAYER_WINS);
+			checkCount(errors, "draws", result.getFinishedGames(GameStatus.DRAWN), DRAWS);
+		}
+		return errors ;
+	}
+
+	/**
+	 * Checks an enumeration of Ultimate Tic-Tac-Toe against the known counts, for the plies they are known.
+	 * @return a description of each count that differs from the known value; empty if all are correct
+	 */
+	public static List<String> verifyUltimate(Result result) {
+		final List<String> errors = new ArrayList<>();
+		for (int ply = 0 ; ply <= result.getDepth() && ply < ULTIMATE_NODES_PER_PLY.length ; ply++) {
+			checkCount(errors, "ply "+ply+" nodes", result.getNodes(ply), ULTIMATE_NODES_PER_PLY[ply]);
+			for (GameStatus status : RESULTS) {
+				checkCount(errors, "ply "+ply+" "+status, result.getFinishedGames(ply, status), 0);
+			}
+		}
+		return errors ;
+	}
+
+	private static void checkCount(List<String> errors, String name, long actual, long expected) {
+		if (actual != expected) {
+			errors.add(String.format("%s: %d, expected %d", name, actual, expected));
+		}
+	}
+
+	/**
+	 * Enumerates the 3x3 game using packed boards.
+	 */
+	public static Result boards(final int depth, int threads) throws InterruptedException {
+		final List<Callable<Result>> tasks = new ArrayList<>();
+		for (int cell = 0 ; cell < Boards.CELLS ; cell++) {
+			final int board = Boards.withMark(0, cell, SquareState.O);
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					final Result result = new Result(depth);
+					boards(board, SquareState.X, 1, result);
+					return result ;
+				}
+			});
+		}
+		return run(depth, GameStatus.OPEN, tasks, threads);
+	}
+
+	private static void boards(int board, SquareState mark, int ply, Result result) {
+		final GameStatus status = Boards.status(board);
+		result.count(ply, status);
+		if (status != GameStatus.OPEN || ply == result.getDepth()) {
+			return ;
+		}
+		final SquareState next = mark == SquareState.O ? SquareState.X : SquareState.O ;
+		int empty = Boards.emptyCells(board);
+		while (empty != 0) {
+			boards(Boards.withMark(board, Integer.numberOfTrailingZeros(empty), mark), next, ply + 1, result);
+			empty &= empty - 1 ;
+		}
+	}
+
+	/**
+	 * Enumerates the 3x3 game using Game, checking its status against the packed board at every position.
+	 * @throws IllegalStateException if Game's status differs from the packed board's in some position
+	 */
+	public static Result game(final int depth, int threads) throws InterruptedException {
+		final List<Callable<Result>> tasks = new ArrayList<>();
+		for (int cell = 0 ; cell < Boards.CELLS ; cell++) {
+			final int rootMove = cell ;
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					final Result result = new Result(depth);
+					final Game game = new Game(new Player("O"), new Player("X"));
+					final int[] moves = new int[Boards.CELLS];
+					moves[0] = rootMove ;
+					game.makeMove(game.getCurrentPlayer(), Boards.location(rootMove));
+					game(game, moves, 1, result);
+					return result ;
+				}
+			});
+		}
+		return run(depth, GameStatus.OPEN, tasks, threads);
+	}
+
+	// moves[0..ply) are the moves that led to the current position of the game
+	private static void game(Game game, int[] moves, int ply, Result result) {
+		final GameStatus status = game.getGameStatus();
+		final int board = Boards.pack(game);
+		if (status != Boards.status(board)) {
+			throw new IllegalStateException(String.format("Game status is %s, expected %s, after moves %s",
+					status, Boards.status(board), describe(moves, ply)));
+		}
+		result.count(ply, status);
+		if (status != GameStatus.OPEN || ply == result.getDepth()) {
+			return ;
+		}
+		for (int cell = 0 ; cell < Boards.CELLS ; cell++) {
+			if (Boards.getSquare(board, cell) != SquareState.EMPTY) {
+				continue ;
+			}
+			moves[ply] = cell ;
+			game.makeMove(game.getCurrentPlayer(), Boards.location(cell));
+			game(game, moves, ply + 1, result);
+			// no undo in Game, so restore the position by replaying the moves to it
+			game.reset();
+			for (int i = 0 ; i < ply ; i++) {
+				game.makeMove(game.getCurrentPlayer(), Boards.location(moves[i]));
+			}
+		}
+	}
+
+	private static String describe(int[] moves, int count) {
+		final List<Location> locations = new ArrayList<>();
+		for (int i = 0 ; i < count ; i++) {
+			locations.add(Boards.location(moves[i]));
+		}
+		return locations.toString();
+	}
+
+	/**
+	 * Enumerates Ultimate Tic-Tac-Toe (see {@link UltimateGame}).
+	 */
+	public static Result ultimate(final int depth, int threads) throws InterruptedException {
+		final List<Callable<Result>> tasks = new ArrayList<>();
+		final UltimateGame start = new UltimateGame();
+		final int[] rootMoves = new int[UltimateGame.MAX_MOVES];
+		final int count = start.legalMoves(rootMoves);
+		for (int i = 0 ; i < count ; i++) {
+			final int rootMove = rootMoves[i];
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					final Result result = new Result(depth);
+					final UltimateGame game = start.copy();
+					game.makeMove(rootMove);
+					ultimate(game, new int[depth + 1][UltimateGame.MAX_MOVES], 1, result);
+					return result ;
+				}
+			});
+		}
+		return run(depth, start.getGameStatus(), tasks, threads);
+	}
+
+	// moves[ply] is the buffer for the legal moves at that ply, so the enumeration does not allocate
+	private static void ultimate(UltimateGame game, int[][] moves, int ply, Result result) {
+		final GameStatus status = game.getGameStatus();
+		result.count(ply, status);
+		if (status != GameStatus.OPEN || ply == result.getDepth()) {
+			return ;
+		}
+		final int count = game.legalMoves(moves[ply]);
+		for (int i = 0 ; i < count ; i++) {
+			game.makeMove(moves[ply][i]);
+			ultimate(game, moves, ply + 1, result);
+			game.undoMove();
+		}
+	}
+
+	// Runs the tasks for each root move (ply 1) on a pool of threads, and adds their results to the count for the root
+	private static Result run(int depth, GameStatus rootStatus, List<Callable<Result>> tasks, int threads) throws InterruptedException {
+		if (depth < 0) {
+			throw new IllegalArgumentException("Depth must not be negative");
+		}
+		final long start = System.nanoTime();
+		final Result total = new Result(depth);
+		total.count(0, rootStatus);
+		if (depth > 0) {
+			final ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			try {
+				for (Future<Result> future : executorService.invokeAll(tasks)) {
+					total.add(future.get());
+				}
+			} catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause ;
+				}
+				throw new IllegalStateException(cause);
+			} finally {
+				executorService.shutdownNow();
+			}
+		}
+		total.elapsedNanos = System.nanoTime() - start ;
+		return total ;
+	}
+
+	/**
+	 * Runs an enumeration and prints the counts. The counts are checked against the known values, and the
+	 * exit status is 1 if any differ.
+	 * Arguments (all optional): variant, one of boards (the default), game or ultimate; depth (default 9, or 5
+	 * for ultimate); number of threads (default the number of processors).
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final String variant = args.length > 0 ? args[0] : "boards" ;
+		final int depth = args.length > 1 ? Integer.parseInt(args[1]) : ("ultimate".equals(variant) ? 5 : 9) ;
+		final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() ;
+
+		final Result result ;
+		switch (variant) {
+		case "boards":
+			result = boards(depth, threads);
+			break ;
+		case "game":
+			result = game(depth, threads);
+			break ;
+		case "ultimate":
+			result = ultimate(depth, threads);
+			break ;
+		default:
+			System.err.println("Usage: Perft [boards|game|ultimate] [depth] [threads]");
+			System.exit(2);
+			return ;
+		}
+		System.out.printf("%s, depth %d, %d threads:%n%s%n", variant, depth, threads, result);
+
+		final List<String> errors = "ultimate".equals(variant) ? verifyUltimate(result) : verify(result);
+		if (errors.isEmpty()) {
+			System.out.println("All counts match the known values");
+		} else {
+			for (String error : errors) {
+				System.out.println("MISMATCH " + error);
+			}
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package tictactoe;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Collects invalidated keys (e.g. board locations) and updates each of them at most once per pulse,
+ * just before the next frame is rendered. The timer only runs while there are pending updates.
+ * <p>
+ * Instances must only be used from the FX Application Thread.
+ */
+class PulseCoalescer<K> {
+
+	/**
+	 * Applies the update for a single key.
+	 */
+	public static interface Updater<K> {
+		public void update(K key) ;
+	}
+
+	private final Updater<K> updater ;
+	private final Set<K> pending ;
+	private final AnimationTimer timer ;
+	private boolean running ;
+
+	public PulseCoalescer(Updater<K> updater) {
+		this.updater = updater ;
+		this.pending = new LinkedHashSet<>();
+		this.timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * Schedules an update for the specified key on the next pulse. Invalidating a key that is already
+	 * pending has no further effect.
+	 */
+	public void invalidate(K key) {
+		pending.add(key);
+		if (! running) {
+			running = true ;
+			timer.start();
+		}
+	}
+
+	/**
+	 * Immediately applies all pending updates.
+	 */
+	public void flush() {
+		if (pending.isEmpty()) {
+			timer.stop();
+			running = false ;
+			return ;
+		}
+		// updates may invalidate further keys; those are applied on the following pulse
+		@SuppressWarnings("unchecked")
+		final K[] keys = (K[]) pending.toArray();
+		pending.clear();
+		for (K key : keys) {
+			updater.update(key);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import tictactoe.Game.SquareState;
+
+/**
+ * Chooses uniformly at random from the empty squares. Mainly useful as a baseline opponent.
+ */
+public class RandomStrategy implements MoveChoosingStrategy {
+
+	@Override
+	public Location chooseMove(Game gameState) {
+		List<Location> emptyLocations = new ArrayList<>();
+		for (int column = 0 ; column < 3; column++) {
+			for (int row = 0 ; row < 3; row++) {
+				if (gameState.getSquare(column, row) == SquareState.EMPTY) {
+					emptyLocations.add(new Location(column, row));
+				}
+			}
+		}
+		if (emptyLocations.isEmpty()) {
+			return null ;
+		}
+		return emptyLocations.get(ThreadLocalRandom.current().nextInt(emptyLocations.size()));
+	}
+
+}
@@ -0,0 +1,100 @@
+package tictactoe;
+
+import java.util.Random;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+
+/**
+ * Stand-alone SpectatorDashboard, fed by a simulated stream of games between random players so that
+ * the dashboard's frame rate can be checked under load. The number of boards may be given as the first
+ * command line argument (default 500).
+ */
+public class Spectator extends Application {
+
+	private static final int DEFAULT_BOARDS = 500 ;
+	private static final int COLUMNS = 25 ;
+	private static final double BOARD_SIZE = 36 ;
+	// moves simulated per millisecond, across all games
+	private static final int MOVE_RATE = 20 ;
+
+	@Override
+	public void start(final Stage primaryStage) {
+		final int boardCount = getParameters().getRaw().isEmpty() ? DEFAULT_BOARDS : Integer.parseInt(getParameters().getRaw().get(0));
+		final SpectatorDashboard dashboard = new SpectatorDashboard(boardCount, COLUMNS, BOARD_SIZE);
+
+		Thread simulation = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				simulate(dashboard, boardCount);
+			}
+		});
+		simulation.setDaemon(true);
+		simulation.start();
+
+		new AnimationTimer() {
+			private long lastUpdate ;
+			@Override
+			public void handle(long now) {
+				if (now - lastUpdate > 1_000_000_000L) {
+					lastUpdate = now ;
+					primaryStage.setTitle(String.format("%d games - %.1f fps - frame p99 %dus", dashboard.getGameCount(),
+							dashboard.getFramesPerSecond(), dashboard.getFrameTime().getValueAtPercentile(99) / 1000));
+				}
+			}
+		}.start();
+		dashboard.start();
+
+		// (StackPane has no constructor taking its children in JavaFX 2.2)
+		final StackPane root = new StackPane();
+		root.getChildren().add(dashboard);
+		primaryStage.setScene(new Scene(root));
+		primaryStage.show();
+	}
+
+	// Plays random moves in boardCount concurrent games, replacing each game with a new one when it finishes.
+	private static void simulate(SpectatorDashboard dashboard, int boardCount) {
+		final Random random = new Random();
+		final long[] gameIds = new long[boardCount];
+		final int[] boards = new int[boardCount];
+		long nextGameId = 0 ;
+		for (int i = 0 ; i < boardCount ; i++) {
+			gameIds[i] = nextGameId++ ;
+			dashboard.post(MoveEvent.reset(gameIds[i], SquareState.O));
+		}
+		try {
+			while (true) {
+				for (int n = 0 ; n < MOVE_RATE ; n++) {
+					final int i = random.nextInt(boardCount);
+					if (Boards.status(boards[i]) != GameStatus.OPEN) {
+						dashboard.post(MoveEvent.remove(gameIds[i]));
+						gameIds[i] = nextGameId++ ;
+						boards[i] = 0 ;
+						dashboard.post(MoveEvent.reset(gameIds[i], SquareState.O));
+						continue ;
+					}
+					final int empty = Boards.emptyCells(boards[i]);
+					int cell = -1 ;
+					for (int skip = random.nextInt(Integer.bitCount(empty)) ; skip >= 0 ; skip--) {
+						cell = Integer.numberOfTrailingZeros(empty >>> (cell + 1)) + cell + 1 ;
+					}
+					final SquareState mark = Integer.bitCount(Boards.oCells(boards[i])) > Integer.bitCount(Boards.xCells(boards[i])) ? SquareState.X : SquareState.O ;
+					boards[i] = Boards.withMark(boards[i], cell, mark);
+					dashboard.post(MoveEvent.move(gameIds[i], Boards.location(cell), mark));
+				}
+				Thread.sleep(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static void main(String[] args) {
+		launch(args);
+	}
+}
@@ -0,0 +1,274 @@
+package tictactoe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Read-only view of many live games at once, for spectators and operations.
+ * <p>
+ * Where the interactive UI uses a node (and several bindings) per square, this view draws every board onto
+ * a single Canvas. Each game is held only as a packed board (see {@link Boards}), and is updated from a
+ * stream of {@link MoveEvent}s which may be posted from any thread. Events are queued and applied once per
+ * frame, and only the boards that changed in that frame are redrawn, so the cost of a frame is proportional
+ * to the number of boards that changed rather than to the number displayed.
+ * <p>
+ * Games are assigned a position on the dashboard when their first event arrives, and give it up when they
+ * are removed. Events for new games that arrive while every position is in use are dropped.
+ */
+public class SpectatorDashboard extends Canvas {
+
+	private static final double GAP = 4 ;
+
+	private static final Color BOARD_COLOR = Color.DARKGREEN ;
+	private static final Color FINISHED_BOARD_COLOR = Color.web("#0b3d0b");
+	private static final Color UNUSED_COLOR = Color.web("#5a3a1a");
+	private static final Color GRID_COLOR = Color.SADDLEBROWN ;
+	private static final Color O_COLOR = Color.LIGHTGOLDENRODYELLOW ;
+	private static final Color X_COLOR = Color.OLIVE ;
+	private static final Color WINNING_LINE_COLOR = Color.KHAKI ;
+
+	private final int columns ;
+	private final int capacity ;
+	private final double boardSize ;
+
+	private final Queue<MoveEvent> events ;
+	private final AtomicLong droppedEvents ;
+
+	// state below is only accessed on the FX Application Thread
+	private final Map<Long, Integer> slots ;
+	private final int[] boards ;
+	private final boolean[] inUse ;
+	private final int[] freeSlots ;
+	private int freeCount ;
+	private final boolean[] dirty ;
+	private final int[] dirtySlots ;
+	private int dirtyCount ;
+
+	private final LatencyHistogram frameTime ;
+	private final AnimationTimer timer ;
+	private long lastFrame ;
+	private double framesPerSecond ;
+
+	/**
+	 * Creates a dashboard with room for the specified number of boards.
+	 * @param capacity maximum number of games displayed at once
+	 * @param columns number of boards in each row of the dashboard
+	 * @param boardSize width and height of each board, in pixels
+	 */
+	public SpectatorDashboard(int capacity, int columns, double boardSize) {
+		super(columns * (boardSize + GAP) + GAP, ((capacity + columns - 1) / columns) * (boardSize + GAP) + GAP);
+		if (capacity < 1 || columns < 1) {
+			throw new IllegalArgumentException("capacity and columns must be at least one");
+		}
+		this.capacity = capacity ;
+		this.columns = columns ;
+		this.boardSize = boardSize ;
+		this.events = new ConcurrentLinkedQueue<>();
+		this.droppedEvents = new AtomicLong();
+		this.slots = new HashMap<>();
+		this.boards = new int[capacity];
+		this.inUse = new boolean[capacity];
+		this.freeSlots = new int[capacity];
+		for (int i = 0 ; i < capacity ; i++) {
+			freeSlots[i] = capacity - 1 - i ;
+		}
+		this.freeCount = capacity ;
+		this.dirty = new boolean[capacity];
+		this.dirtySlots = new int[capacity];
+		this.frameTime = new LatencyHistogram("Spectator frame time");
+		this.timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				frame(now);
+			}
+		};
+
+		final GraphicsContext gc = getGraphicsContext2D();
+		gc.setFill(GRID_COLOR);
+		gc.fillRect(0, 0, getWidth(), getHeight());
+		for (int slot = 0 ; slot < capacity ; slot++) {
+			drawBoard(gc, slot);
+		}
+	}
+
+	/**
+	 * Queues an event to be shown on the next frame. May be called from any thread.
+	 */
+	public void post(MoveEvent event) {
+		events.add(event);
+	}
+
+	/**
+	 * Starts applying events and redrawing. Must be called on the FX Application Thread.
+	 */
+	public void start() {
+		timer.start();
+	}
+
+	/**
+	 * Stops applying events and redrawing; events posted in the meantime remain queued.
+	 * Must be called on the FX Application Thread.
+	 */
+	public void stop() {
+		timer.stop();
+		lastFrame = 0 ;
+	}
+
+	public int getCapacity() {
+		return capacity ;
+	}
+
+	/**
+	 * Number of games currently displayed.
+	 */
+	public int getGameCount() {
+		return capacity - freeCount ;
+	}
+
+	/**
+	 * Number of events dropped because they were for a new game when the dashboard was full.
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	/**
+	 * Time spent applying events and drawing in each frame.
+	 */
+	public LatencyHistogram getFrameTime() {
+		return frameTime ;
+	}
+
+	/**
+	 * Smoothed rate at which frames are being drawn.
+	 */
+	public double getFramesPerSecond() {
+		return framesPerSecond ;
+	}
+
+	private void frame(long now) {
+		final long start = System.nanoTime();
+
+		MoveEvent event ;
+		while ((event = events.poll()) != null) {
+			apply(event);
+		}
+
+		final GraphicsContext gc = getGraphicsContext2D();
+		for (int i = 0 ; i < dirtyCount ; i++) {
+			final int slot = dirtySlots[i];
+			dirty[slot] = false ;
+			drawBoard(gc, slot);
+		}
+		dirtyCount = 0 ;
+
+		frameTime.recordSince(start);
+		if (lastFrame != 0 && now > lastFrame) {
+			final double instantaneous = 1e9 / (now - lastFrame);
+			framesPerSecond = framesPerSecond == 0 ? instantaneous : 0.9 * framesPerSecond + 0.1 * instantaneous ;
+		}
+		lastFrame = now ;
+	}
+
+	private void apply(MoveEvent event) {
+		final Long gameId = event.getGameId();
+		Integer slot = slots.get(gameId);
+		if (event.getType() == MoveEvent.Type.REMOVE) {
+			if (slot != null) {
+				slots.remove(gameId);
+				boards[slot] = 0 ;
+				inUse[slot] = false ;
+				freeSlots[freeCount++] = slot ;
+				markDirty(slot);
+			}
+			return ;
+		}
+		if (slot == null) {
+			if (freeCount == 0) {
+				droppedEvents.incrementAndGet();
+				return ;
+			}
+			slot = freeSlots[--freeCount];
+			slots.put(gameId, slot);
+			inUse[slot] = true ;
+			boards[slot] = 0 ;
+		}
+		if (event.getType() == MoveEvent.Type.RESET) {
+			boards[slot] = 0 ;
+		} else {
+			boards[slot] = Boards.withMark(boards[slot], event.getCell(), event.getMark());
+		}
+		markDirty(slot);
+	}
+
+	private void markDirty(int slot) {
+		if (! dirty[slot]) {
+			dirty[slot] = true ;
+			dirtySlots[dirtyCount++] = slot ;
+		}
+	}
+
+	private void drawBoard(GraphicsContext gc, int slot) {
+		final double x = GAP + (slot % columns) * (boardSize + GAP) ;
+		final double y = GAP + (slot / columns) * (boardSize + GAP) ;
+		final double cellSize = boardSize / 3 ;
+		final int board = boards[slot];
+
+		if (! inUse[slot]) {
+			gc.setFill(UNUSED_COLOR);
+			gc.fillRect(x, y, boardSize, boardSize);
+			return ;
+		}
+
+		final GameStatus status = Boards.status(board);
+		gc.setFill(status == GameStatus.OPEN ? BOARD_COLOR : FINISHED_BOARD_COLOR);
+		gc.fillRect(x, y, boardSize, boardSize);
+
+		gc.setLineWidth(1);
+		gc.setStroke(GRID_COLOR);
+		for (int i = 1 ; i < 3 ; i++) {
+			gc.strokeLine(x + i * cellSize, y, x + i * cellSize, y + boardSize);
+			gc.strokeLine(x, y + i * cellSize, x + boardSize, y + i * cellSize);
+		}
+
+		final double inset = cellSize * 0.2 ;
+		gc.setLineWidth(Math.max(1, cellSize / 10));
+		for (int cell = 0 ; cell < Boards.CELLS ; cell++) {
+			final SquareState square = Boards.getSquare(board, cell);
+			final double cellX = x + (cell % 3) * cellSize ;
+			final double cellY = y + (cell / 3) * cellSize ;
+			if (square == SquareState.O) {
+				gc.setStroke(O_COLOR);
+				gc.strokeOval(cellX + inset, cellY + inset, cellSize - 2 * inset, cellSize - 2 * inset);
+			} else if (square == SquareState.X) {
+				gc.setStroke(X_COLOR);
+				gc.strokeLine(cellX + inset, cellY + inset, cellX + cellSize - inset, cellY + cellSize - inset);
+				gc.strokeLine(cellX + cellSize - inset, cellY + inset, cellX + inset, cellY + cellSize - inset);
+			}
+		}
+
+		if (status == GameStatus.O_WON || status == GameStatus.X_WON) {
+			final int cells = status == GameStatus.O_WON ? Boards.oCells(board) : Boards.xCells(board);
+			for (int mask : Boards.LINE_MASKS) {
+				if ((cells & mask) == mask) {
+					final int first = Integer.numberOfTrailingZeros(mask);
+					final int last = 31 - Integer.numberOfLeadingZeros(mask);
+					gc.setStroke(WINNING_LINE_COLOR);
+					gc.strokeLine(x + (first % 3 + 0.5) * cellSize, y + (first / 3 + 0.5) * cellSize,
+							x + (last % 3 + 0.5) * cellSize, y + (last / 3 + 0.5) * cellSize);
+					break ;
+				}
+			}
+		}
+	}
+}
@@ -1,22 +1,60 @@
 package tictactoe;
 
-import java.io.IOException;
-
-
-import javafx.fxml.FXMLLoader;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
 
+/**
+ * A single square on the board. The nodes are created directly rather than loaded from FXML, as the
+ * board creates one square per location and parsing the same FXML for each of them dominates start-up time.
+ * The bindings to the game state are not created until the square is first added to a scene.
+ */
 public class Square extends StackPane {
 
-	public Square(int column, int row, Player player, Game game) throws IOException {
-		FXMLLoader loader = new FXMLLoader(getClass().getResource("Square.fxml"));
-		loader.setRoot(this);
-		final SquareController squareController = new SquareController(player, game, new Location(column, row));
-		loader.setController(squareController);
-		loader.load();
+	private final SquareController controller ;
+
+	public Square(int column, int row, Player player, Game game, PulseCoalescer<Location> updates) {
+		getStyleClass().add("board-grid");
+		final Label oLabel = createLabel("O");
+		final Label xLabel = createLabel("X");
+		getChildren().addAll(oLabel, xLabel);
+
+		final SquareController squareController = new SquareController(player, game, new Location(column, row), this, oLabel, xLabel, updates);
+		this.controller = squareController ;
+		setOnMouseClicked(new EventHandler<MouseEvent>() {
+			@Override
+			public void handle(MouseEvent event) {
+				squareController.makeMove();
+			}
+		});
+		sceneProperty().addListener(new ChangeListener<Scene>() {
+			@Override
+			public void changed(ObservableValue<? extends Scene> observable,
+					Scene oldScene, Scene newScene) {
+				if (newScene != null) {
+					observable.removeListener(this);
+					squareController.initialize();
+				}
+			}
+		});
+
 		GridPane.setColumnIndex(this, column);
 		GridPane.setRowIndex(this, row);
 	}
 
+	SquareController getController() {
+		return controller ;
+	}
+
+	private static Label createLabel(String mark) {
+		Label label = new Label(mark);
+		label.getStyleClass().add(mark);
+		return label ;
+	}
+
 }
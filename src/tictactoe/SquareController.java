@@ -1,7 +1,9 @@
 package tictactoe;
 
 import tictactoe.Game.SquareState;
-import javafx.fxml.FXML;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
 import javafx.scene.control.Label;
 import javafx.scene.layout.StackPane;
 
@@ -9,32 +11,79 @@ public class SquareController {
 	private final Player player ;
 	private final Game game ;
 	private final Location location ;
+	private final StackPane root ;
+	private final Label oLabel ;
+	private final Label xLabel ;
+	private final PulseCoalescer<Location> updates ;
 
-	@FXML
-	private StackPane root ;
-	@FXML
-	private Label oLabel ;
-	@FXML 
-	private Label xLabel ;
+	private boolean hinted ;
+	private boolean lastMove ;
 	
-	public SquareController(Player player, Game game, Location location) {
+	public SquareController(Player player, Game game, Location location, StackPane root, Label oLabel, Label xLabel,
+			PulseCoalescer<Location> updates) {
 		this.player = player ;
 		this.game = game ;
 		this.location = location ;
+		this.root = root ;
+		this.oLabel = oLabel ;
+		this.xLabel = xLabel ;
+		this.updates = updates ;
 	}
 	
 	public void initialize() {
-		root.disableProperty().bind(
-			game.currentPlayerProperty().isNotEqualTo(player)
-			.or(game.gameStatusProperty().isNotEqualTo(Game.GameStatus.OPEN))
-			.or(game.squareProperty(location).isNotEqualTo(Game.SquareState.EMPTY))
-		);
-		oLabel.visibleProperty().bind(game.squareProperty(location).isEqualTo(SquareState.O));
-		xLabel.visibleProperty().bind(game.squareProperty(location).isEqualTo(SquareState.X));
+		// Whether it is the human player's turn is handled by disabling the whole board (see GameController),
+		// so a square only needs to observe its own state:
+		game.squareProperty(location).addListener(new ChangeListener<SquareState>() {
+			@Override
+			public void changed(ObservableValue<? extends SquareState> observable,
+					SquareState oldValue, SquareState newValue) {
+				// occupancy decides whether the square can be clicked, so it is applied at once;
+				// only the rendering waits for the next pulse
+				root.setDisable(newValue != SquareState.EMPTY);
+				updates.invalidate(location);
+			}
+		});
+		root.setDisable(game.getSquare(location) != SquareState.EMPTY);
+		refresh();
+	}
+
+	public void setHinted(boolean hinted) {
+		if (this.hinted != hinted) {
+			this.hinted = hinted ;
+			updates.invalidate(location);
+		}
+	}
+
+	public void setLastMove(boolean lastMove) {
+		if (this.lastMove != lastMove) {
+			this.lastMove = lastMove ;
+			updates.invalidate(location);
+		}
+	}
+
+	/**
+	 * Updates the labels and highlights to reflect the current state of this square. (The disabled state
+	 * is kept up to date as soon as the square changes.)
+	 */
+	public void refresh() {
+		final SquareState state = game.getSquare(location);
+		oLabel.setVisible(state == SquareState.O);
+		xLabel.setVisible(state == SquareState.X);
+		setStyleClass("hint", hinted);
+		setStyleClass("last-move", lastMove);
+	}
 
+	private void setStyleClass(String styleClass, boolean present) {
+		final ObservableList<String> styleClasses = root.getStyleClass();
+		if (present) {
+			if (! styleClasses.contains(styleClass)) {
+				styleClasses.add(styleClass);
+			}
+		} else {
+			styleClasses.remove(styleClass);
+		}
 	}
 
-	@FXML
 	public void makeMove() {
 		game.makeMove(player, location);
 	}
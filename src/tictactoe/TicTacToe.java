@@ -1,6 +1,8 @@
 package tictactoe;
 
 import java.io.IOException;
+
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -11,7 +13,9 @@ public class TicTacToe extends Application {
 
 	@Override
 	public void start(final Stage primaryStage) throws IOException {
-		
+		final long startTime = System.nanoTime();
+		Metrics.getInstance().register();
+
 		final Player humanPlayer = new Player("Human");
 		final ComputerPlayer computerPlayer = new ComputerPlayer("Joshua", new UnbeatableStrategy());
 		final Game game = new Game(humanPlayer, computerPlayer);
@@ -25,6 +29,14 @@ public class TicTacToe extends Application {
 		primaryStage.setScene(scene);
 		primaryStage.show();
 		
+		// Animation timers are called at the start of each pulse, so the first call is immediately before the first frame is rendered:
+		new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				stop();
+				Metrics.getInstance().setStartupTime(System.nanoTime() - startTime);
+			}
+		}.start();
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,443 @@
+package tictactoe;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import tictactoe.Game.GameStatus;
+
+/**
+ * Round-robin tournament between MoveChoosingStrategy implementations, for ranking new strategies against
+ * existing ones.
+ * <p>
+ * Every pair of entrants plays a match, made up of pairs of games in which each entrant moves first once
+ * (using {@link Game#reset(Player)}), so neither gains from the first-move advantage. Game pairs from all
+ * matches are played in parallel on a pool of worker threads. Each match is stopped as soon as a sequential
+ * probability ratio test (SPRT) decides which entrant is stronger by at least the configured Elo margin, or
+ * when it reaches the maximum number of games.
+ * <p>
+ * Every game result and match decision is written (and flushed) to the output as soon as it is known, so a
+ * long tournament can be stopped at any point without losing the results so far. The final standings give
+ * each entrant's Elo rating relative to the field, with a 95% confidence interval.
+ * <p>
+ * Strategies are shared between worker threads, so they must be thread safe. A strategy that throws an
+ * exception, or chooses an illegal move, forfeits the game.
+ */
+public class Tournament {
+
+	public static final double DEFAULT_ELO_MARGIN = 50 ;
+	public static final int DEFAULT_MAX_GAMES = 2000 ;
+
+	// SPRT error rates (false positive and false negative)
+	private static final double ALPHA = 0.05 ;
+	private static final double BETA = 0.05 ;
+	private static final double LOWER_BOUND = Math.log(BETA / (1 - ALPHA));
+	private static final double UPPER_BOUND = Math.log((1 - BETA) / ALPHA);
+	// the normal approximation used by the SPRT is poor for very small samples
+	private static final int MIN_GAMES = 20 ;
+
+	private final Map<String, MoveChoosingStrategy> entrants ;
+	private final int maxGames ;
+	private final double eloMargin ;
+	private final int threads ;
+
+	private volatile boolean stopped ;
+
+	/**
+	 * Results of a set of games, from the point of view of one entrant.
+	 */
+	public static class Score {
+		private int wins ;
+		private int draws ;
+		private int losses ;
+
+		public int getWins() {
+			return wins ;
+		}
+
+		public int getDraws() {
+			return draws ;
+		}
+
+		public int getLosses() {
+			return losses ;
+		}
+
+		public int getGames() {
+			return wins + draws + losses ;
+		}
+
+		/**
+		 * Average points per game, scoring 1 for a win and 1/2 for a draw.
+		 */
+		public double getScore() {
+			final int games = getGames();
+			return games == 0 ? 0.5 : (wins + 0.5 * draws) / games ;
+		}
+
+		// Variance of the points from a single game
+		double getVariance() {
+			final int games = getGames();
+			if (games == 0) {
+				return 0 ;
+			}
+			final double score = getScore();
+			return (wins * square(1 - score) + draws * square(0.5 - score) + losses * square(score)) / games ;
+		}
+
+		/**
+		 * Elo rating difference corresponding to the score.
+		 */
+		public double getElo() {
+			return elo(getScore());
+		}
+
+		/**
+		 * Lower end of the 95% confidence interval for the Elo rating difference.
+		 */
+		public double getEloLower() {
+			return elo(getScore() - 1.96 * standardError());
+		}
+
+		/**
+		 * Upper end of the 95% confidence interval for the Elo rating difference.
+		 */
+		public double getEloUpper() {
+			return elo(getScore() + 1.96 * standardError());
+		}
+
+		private double standardError() {
+			final int games = getGames();
+			return games == 0 ? 0 : Math.sqrt(getVariance() / games) ;
+		}
+
+		void add(int wins, int draws, int losses) {
+			this.wins += wins ;
+			this.draws += draws ;
+			this.losses += losses ;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("+%d =%d -%d, Elo %.0f [%.0f, %.0f]", wins, draws, losses, getElo(), getEloLower(), getEloUpper());
+		}
+	}
+
+	/**
+	 * An entrant's results against the whole field.
+	 */
+	public static class Standing extends Score {
+		private final String name ;
+
+		Standing(String name) {
+			this.name = name ;
+		}
+
+		public String getName() {
+			return name ;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": " + super.toString();
+		}
+	}
+
+	/**
+	 * Creates a tournament between the specified entrants, keyed by name.
+	 * @param entrants at least two strategies
+	 * @param maxGames maximum number of games in each match (rounded up to an even number)
+	 * @param eloMargin the smallest Elo difference the SPRT should detect in each match
+	 * @param threads number of worker threads
+	 * @throws IllegalArgumentException if there are fewer than two entrants, if a name contains a comma or line
+	 * break (names are written unquoted in the comma-separated output), or the other parameters are not positive
+	 */
+	public Tournament(Map<String, MoveChoosingStrategy> entrants, int maxGames, double eloMargin, int threads) {
+		if (entrants.size() < 2) {
+			throw new IllegalArgumentException("A tournament needs at least two entrants");
+		}
+		for (String name : entrants.keySet()) {
+			if (name.contains(",") || name.contains("\n") || name.contains("\r")) {
+				throw new IllegalArgumentException("Entrant name \""+name+"\" contains a comma or line break");
+			}
+		}
+		if (maxGames < 1 || eloMargin <= 0 || threads < 1) {
+			throw new IllegalArgumentException("maxGames, eloMargin and threads must be positive");
+		}
+		this.entrants = new LinkedHashMap<>(entrants);
+		this.maxGames = maxGames ;
+		this.eloMargin = eloMargin ;
+		this.threads = threads ;
+	}
+
+	/**
+	 * Creates a tournament with the default maximum match length and Elo margin, with one thread per available processor.
+	 */
+	public Tournament(Map<String, MoveChoosingStrategy> entrants) {
+		this(entrants, DEFAULT_MAX_GAMES, DEFAULT_ELO_MARGIN, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Stops the tournament (if running) once the games in progress are finished.
+	 */
+	public void stop() {
+		stopped = true ;
+	}
+
+	/**
+	 * Plays the tournament, writing results to the specified output as they occur.
+	 * <p>
+	 * Each line of output is a comma-separated record, starting with its type:
+	 * <ul>
+	 * <li>game,O player,X player,first player,game status</li>
+	 * <li>match,entrant,opponent,wins,draws,losses,LLR,decision,Elo,Elo lower,Elo upper</li>
+	 * <li>standing,entrant,games,wins,draws,losses,Elo,Elo lower,Elo upper</li>
+	 * <li>error,entrant,exception class (an entrant's strategy threw an exception, forfeiting the game)</li>
+	 * </ul>
+	 * @return the final standings, strongest first
+	 * @throws InterruptedException if interrupted while waiting for the matches to finish; the standings
+	 * so far have been written to the output.
+	 */
+	public List<Standing> run(final PrintWriter out) throws InterruptedException {
+		stopped = false ;
+		final List<String> names = new ArrayList<>(entrants.keySet());
+		final List<Match> matches = new ArrayList<>();
+		for (int i = 0 ; i < names.size() ; i++) {
+			for (int j = i + 1 ; j < names.size() ; j++) {
+				matches.add(new Match(names.get(i), names.get(j), out));
+			}
+		}
+
+		// make sure all threads have work even if there are fewer matches than threads:
+		final int workersPerMatch = Math.max(1, (threads + matches.size() - 1) / matches.size());
+		final CountDownLatch finished = new CountDownLatch(matches.size() * workersPerMatch);
+		final ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (Match match : matches) {
+			for (int i = 0 ; i < workersPerMatch ; i++) {
+				executorService.submit(new MatchWorker(match, executorService, finished));
+			}
+		}
+
+		try {
+			finished.await();
+		} finally {
+			stopped = true ;
+			executorService.shutdownNow();
+			printStandings(out, standings(matches));
+		}
+		return standings(matches);
+	}
+
+	private void printStandings(PrintWriter out, List<Standing> standings) {
+		for (Standing standing : standings) {
+			print(out, String.format("standing,%s,%d,%d,%d,%d,%.1f,%.1f,%.1f", standing.getName(), standing.getGames(),
+				standing.getWins(), standing.getDraws(), standing.getLosses(), standing.getElo(), standing.getEloLower(), standing.getEloUpper()));
+		}
+	}
+
+	private List<Standing> standings(List<Match> matches) {
+		final Map<String, Standing> standings = new LinkedHashMap<>();
+		for (String name : entrants.keySet()) {
+			standings.put(name, new Standing(name));
+		}
+		for (Match match : matches) {
+			synchronized (match) {
+				standings.get(match.nameA).add(match.score.wins, match.score.draws, match.score.losses);
+				standings.get(match.nameB).add(match.score.losses, match.score.draws, match.score.wins);
+			}
+		}
+		List<Standing> result = new ArrayList<>(standings.values());
+		Collections.sort(result, new Comparator<Standing>() {
+			@Override
+			public int compare(Standing s1, Standing s2) {
+				return Double.compare(s2.getScore(), s1.getScore());
+			}
+		});
+		return result ;
+	}
+
+	/**
+	 * Log-likelihood ratio of the results, for the hypothesis that the Elo difference is +eloMargin against
+	 * the hypothesis that it is -eloMargin, using the normal approximation to the (trinomial) game results.
+	 */
+	static double logLikelihoodRatio(Score score, double eloMargin) {
+		final double s0 = expectedScore(-eloMargin);
+		final double s1 = expectedScore(eloMargin);
+		// avoid dividing by zero before any decisive game has been played (e.g. a run of draws):
+		final double variance = Math.max(score.getVariance(), 1e-3);
+		return score.getGames() * (s1 - s0) * (2 * score.getScore() - s0 - s1) / (2 * variance) ;
+	}
+
+	static double expectedScore(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	static double elo(double score) {
+		final double clamped = Math.min(Math.max(score, 0.001), 0.999);
+		return -400 * Math.log10(1 / clamped - 1);
+	}
+
+	private static double square(double x) {
+		return x * x ;
+	}
+
+	private static void print(PrintWriter out, String line) {
+		synchronized (out) {
+			out.println(line);
+			out.flush();
+		}
+	}
+
+	// A match between two entrants, shared by the workers playing it
+	private final class Match {
+		private final String nameA ;
+		private final String nameB ;
+		private final PrintWriter out ;
+		private final Score score = new Score();
+		private int gamesStarted ;
+		private boolean decided ;
+
+		Match(String nameA, String nameB, PrintWriter out) {
+			this.nameA = nameA ;
+			this.nameB = nameB ;
+			this.out = out ;
+		}
+
+		// Reserves the next pair of games; false if the match is over
+		synchronized boolean startGamePair() {
+			if (decided || stopped || gamesStarted >= maxGames) {
+				return false ;
+			}
+			gamesStarted += 2 ;
+			return true ;
+		}
+
+		// Records a game, from A's point of view
+		void record(Player oPlayer, Player xPlayer, Player first, GameStatus status, int resultForA) {
+			print(out, String.format("game,%s,%s,%s,%s", oPlayer, xPlayer, first, status.name()));
+			synchronized (this) {
+				score.add(resultForA > 0 ? 1 : 0, resultForA == 0 ? 1 : 0, resultForA < 0 ? 1 : 0);
+				if (decided) {
+					return ;
+				}
+				final double llr = logLikelihoodRatio(score, eloMargin);
+				String decision = null ;
+				if (score.getGames() >= MIN_GAMES && llr >= UPPER_BOUND) {
+					decision = nameA + " stronger" ;
+				} else if (score.getGames() >= MIN_GAMES && llr <= LOWER_BOUND) {
+					decision = nameB + " stronger" ;
+				} else if (score.getGames() >= maxGames) {
+					decision = "inconclusive" ;
+				}
+				if (decision != null) {
+					decided = true ;
+					print(out, String.format("match,%s,%s,%d,%d,%d,%.2f,%s,%.1f,%.1f,%.1f", nameA, nameB, score.wins, score.draws, score.losses,
+						llr, decision, score.getElo(), score.getEloLower(), score.getEloUpper()));
+				}
+			}
+		}
+	}
+
+	// Plays pairs of games in a match, resubmitting itself until the match is over
+	private final class MatchWorker implements Runnable {
+		private final Match match ;
+		private final ExecutorService executorService ;
+		private final CountDownLatch finished ;
+		private final ComputerPlayer playerA ;
+		private final ComputerPlayer playerB ;
+		private final Game game ;
+
+		MatchWorker(Match match, ExecutorService executorService, CountDownLatch finished) {
+			this.match = match ;
+			this.executorService = executorService ;
+			this.finished = finished ;
+			this.playerA = new ComputerPlayer(match.nameA, entrants.get(match.nameA));
+			this.playerB = new ComputerPlayer(match.nameB, entrants.get(match.nameB));
+			this.game = new Game(playerA, playerB);
+		}
+
+		@Override
+		public void run() {
+			boolean resubmitted = false ;
+			try {
+				if (! match.startGamePair()) {
+					return ;
+				}
+				playGame(playerA);
+				playGame(playerB);
+				executorService.submit(this);
+				resubmitted = true ;
+			} catch (RejectedExecutionException e) {
+				// tournament has been shut down
+			} finally {
+				// a worker that stops for any reason must be counted, or run(...) would wait forever
+				if (! resubmitted) {
+					finished.countDown();
+				}
+			}
+		}
+
+		private void playGame(ComputerPlayer first) {
+			game.reset(first);
+			ComputerPlayer forfeited = null ;
+			while (game.getGameStatus() == GameStatus.OPEN) {
+				final ComputerPlayer current = (ComputerPlayer) game.getCurrentPlayer();
+				final Location move ;
+				try {
+					move = current.chooseMove(game);
+				} catch (RuntimeException e) {
+					// a strategy that fails forfeits the game
+					// only the exception's class: its message may contain commas
+					print(match.out, String.format("error,%s,%s", current, e.getClass().getName()));
+					forfeited = current ;
+					break ;
+				}
+				try {
+					game.makeMove(current, move);
+				} catch (IllegalArgumentException | NullPointerException e) {
+					// as does an illegal move
+					forfeited = current ;
+					break ;
+				}
+			}
+			final GameStatus status = game.getGameStatus();
+			final int resultForA ;
+			if (forfeited != null) {
+				resultForA = forfeited == playerA ? -1 : 1 ;
+			} else if (status == GameStatus.O_WON) {
+				resultForA = 1 ;
+			} else if (status == GameStatus.X_WON) {
+				resultForA = -1 ;
+			} else {
+				resultForA = 0 ;
+			}
+			match.record(playerA, playerB, first, forfeited != null ? (forfeited == playerA ? GameStatus.X_WON : GameStatus.O_WON) : status, resultForA);
+		}
+	}
+
+	/**
+	 * Runs a tournament between the strategies in this package, writing the results to standard output.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, MoveChoosingStrategy> entrants = new LinkedHashMap<>();
+		entrants.put("Unbeatable", new UnbeatableStrategy());
+		entrants.put("Random", new RandomStrategy());
+		new Tournament(entrants).run(new PrintWriter(System.out));
+	}
+}
@@ -0,0 +1,369 @@
+package tictactoe;
+
+import java.util.Random;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+
+/**
+ * Represents the state of a game of "Ultimate" Tic-Tac-Toe, in which each square of the outer board is
+ * itself a 3x3 game.
+ * <p>
+ * The square a player chooses in a sub-board decides which sub-board the opponent must play in next. If
+ * that sub-board has already been won or drawn, the opponent may play in any open sub-board. Winning a
+ * sub-board claims the corresponding square of the outer board, and the game is won by completing a line
+ * on the outer board.
+ * <p>
+ * Unlike Game, this class is not observable: it is intended to be searched quickly, so the state is packed
+ * into nine 18-bit sub-boards (in the format used by {@link Boards}) plus the index of the sub-board the
+ * next move is forced into. The status of each sub-board is computed only when that sub-board changes,
+ * and the status of the outer board only when a sub-board is closed. Moves can be undone, so a single
+ * instance can be used for a depth-first search. Instances are not thread safe; use {@link #copy()} to
+ * give each thread its own.
+ * <p>
+ * Moves are identified by an int, board * 9 + cell, where board and cell are both indexes as used by Boards
+ * (row * 3 + column).
+ */
+public class UltimateGame {
+
+	/**
+	 * Value of {@link #getForcedBoard()} when the next move may be made in any open sub-board.
+	 */
+	public static final int ANY_BOARD = -1 ;
+
+	/**
+	 * Maximum number of moves in a game (and so the maximum number of legal moves in any position).
+	 */
+	public static final int MAX_MOVES = 81 ;
+
+	// Zobrist keys for incremental position hashing: one per (move, mark), one per forced board
+	// (index 9 for ANY_BOARD) and one for X to move.
+	private static final long[] MOVE_KEYS = new long[MAX_MOVES * 2];
+	private static final long[] FORCED_KEYS = new long[10];
+	private static final long X_TO_MOVE_KEY ;
+	static {
+		Random random = new Random(0x5EED_7AC7_0E5L);
+		for (int i = 0 ; i < MOVE_KEYS.length ; i++) {
+			MOVE_KEYS[i] = random.nextLong();
+		}
+		for (int i = 0 ; i < FORCED_KEYS.length ; i++) {
+			FORCED_KEYS[i] = random.nextLong();
+		}
+		X_TO_MOVE_KEY = random.nextLong();
+	}
+
+	private final int[] boards ;
+	private int forcedBoard ;
+
+	// 9-bit masks over the outer board
+	private int outerO ;
+	private int outerX ;
+	private int outerClosed ;
+
+	private GameStatus gameStatus ;
+	private SquareState currentMark ;
+	private long hash ;
+
+	// undo information
+	private final int[] moveHistory ;
+	private final int[] forcedHistory ;
+	private final boolean[] closedHistory ;
+	private int moveCount ;
+
+	/**
+	 * Creates a new game in which O has the first move.
+	 */
+	public UltimateGame() {
+		this.boards = new int[9];
+		this.moveHistory = new int[MAX_MOVES];
+		this.forcedHistory = new int[MAX_MOVES];
+		this.closedHistory = new boolean[MAX_MOVES];
+		reset(SquareState.O);
+	}
+
+	private UltimateGame(UltimateGame other) {
+		this.boards = other.boards.clone();
+		this.forcedBoard = other.forcedBoard ;
+		this.outerO = other.outerO ;
+		this.outerX = other.outerX ;
+		this.outerClosed = other.outerClosed ;
+		this.gameStatus = other.gameStatus ;
+		this.currentMark = other.currentMark ;
+		this.hash = other.hash ;
+		this.moveHistory = other.moveHistory.clone();
+		this.forcedHistory = other.forcedHistory.clone();
+		this.closedHistory = other.closedHistory.clone();
+		this.moveCount = other.moveCount ;
+	}
+
+	/**
+	 * An independent copy of this game, including its move history.
+	 */
+	public UltimateGame copy() {
+		return new UltimateGame(this);
+	}
+
+	/**
+	 * Resets the game, giving the first move to the specified mark.
+	 * @param firstMark
+	 * @throws IllegalArgumentException if firstMark is EMPTY
+	 */
+	public void reset(SquareState firstMark) {
+		if (firstMark != SquareState.O && firstMark != SquareState.X) {
+			throw new IllegalArgumentException(firstMark + " cannot move first");
+		}
+		for (int i = 0 ; i < boards.length ; i++) {
+			boards[i] = 0 ;
+		}
+		forcedBoard = ANY_BOARD ;
+		outerO = 0 ;
+		outerX = 0 ;
+		outerClosed = 0 ;
+		gameStatus = GameStatus.OPEN ;
+		currentMark = firstMark ;
+		moveCount = 0 ;
+		hash = FORCED_KEYS[9] ^ (firstMark == SquareState.X ? X_TO_MOVE_KEY : 0L) ;
+	}
+
+	/**
+	 * The mark of the player to move, or null if the game is over.
+	 */
+	public SquareState getCurrentMark() {
+		return gameStatus == GameStatus.OPEN ? currentMark : null ;
+	}
+
+	public GameStatus getGameStatus() {
+		return gameStatus ;
+	}
+
+	/**
+	 * The sub-board the next move must be made in, or ANY_BOARD.
+	 */
+	public int getForcedBoard() {
+		return forcedBoard ;
+	}
+
+	/**
+	 * The packed (18-bit) state of the specified sub-board.
+	 */
+	public int getBoard(int board) {
+		return boards[board];
+	}
+
+	public SquareState getSquare(int board, int cell) {
+		return Boards.getSquare(boards[board], cell);
+	}
+
+	/**
+	 * The status of the specified sub-board.
+	 */
+	public GameStatus getBoardStatus(int board) {
+		final int bit = 1 << board ;
+		if ((outerO & bit) != 0) {
+			return GameStatus.O_WON ;
+		} else if ((outerX & bit) != 0) {
+			return GameStatus.X_WON ;
+		} else if ((outerClosed & bit) != 0) {
+			return GameStatus.DRAWN ;
+		} else {
+			return GameStatus.OPEN ;
+		}
+	}
+
+	/**
+	 * 9-bit mask of the sub-boards won by the specified mark.
+	 */
+	public int getOuterCells(SquareState mark) {
+		return mark == SquareState.O ? outerO : outerX ;
+	}
+
+	/**
+	 * 9-bit mask of the sub-boards that have been won or drawn.
+	 */
+	public int getClosedBoards() {
+		return outerClosed ;
+	}
+
+	/**
+	 * Number of moves made since the last reset.
+	 */
+	public int getMoveCount() {
+		return moveCount ;
+	}
+
+	/**
+	 * Zobrist hash of the current position (squares, forced board and player to move).
+	 */
+	public long getHash() {
+		return hash ;
+	}
+
+	/**
+	 * True if the specified move may be made in the current position.
+	 */
+	public boolean isLegal(int move) {
+		if (gameStatus != GameStatus.OPEN || move < 0 || move >= MAX_MOVES) {
+			return false ;
+		}
+		final int board = move / 9 ;
+		if (forcedBoard != ANY_BOARD && board != forcedBoard) {
+			return false ;
+		}
+		if ((outerClosed & (1 << board)) != 0) {
+			return false ;
+		}
+		return (Boards.emptyCells(boards[board]) & (1 << (move % 9))) != 0 ;
+	}
+
+	/**
+	 * Writes the legal moves in the current position into the specified array, which must have room for
+	 * at least MAX_MOVES entries.
+	 * @return the number of legal moves
+	 */
+	public int legalMoves(int[] moves) {
+		if (gameStatus != GameStatus.OPEN) {
+			return 0 ;
+		}
+		if (forcedBoard != ANY_BOARD) {
+			return addMoves(forcedBoard, moves, 0);
+		}
+		int count = 0 ;
+		for (int board = 0 ; board < 9 ; board++) {
+			if ((outerClosed & (1 << board)) == 0) {
+				count = addMoves(board, moves, count);
+			}
+		}
+		return count ;
+	}
+
+	private int addMoves(int board, int[] moves, int count) {
+		int empty = Boards.emptyCells(boards[board]);
+		while (empty != 0) {
+			final int cell = Integer.numberOfTrailingZeros(empty);
+			moves[count++] = board * 9 + cell ;
+			empty &= empty - 1 ;
+		}
+		return count ;
+	}
+
+	/**
+	 * Make a move for the current player in the specified cell of the specified sub-board.
+	 * @throws IllegalArgumentException if the move is not legal.
+	 */
+	public void makeMove(int board, int cell) {
+		if (board < 0 || board >= 9 || cell < 0 || cell >= 9) {
+			throw new IllegalArgumentException(String.format("[%d, %d] is not a valid move", board, cell));
+		}
+		makeMove(board * 9 + cell);
+	}
+
+	/**
+	 * Make a move for the current player.
+	 * @param move board * 9 + cell
+	 * @throws IllegalArgumentException if the move is not legal.
+	 */
+	public void makeMove(int move) {
+		if (! isLegal(move)) {
+			throw new IllegalArgumentException(String.format("%d is not a legal move (forced board %d, status %s)", move, forcedBoard, gameStatus));
+		}
+		final int board = move / 9 ;
+		final int cell = move % 9 ;
+		final SquareState mark = currentMark ;
+
+		moveHistory[moveCount] = move ;
+		forcedHistory[moveCount] = forcedBoard ;
+
+		final int updated = Boards.withMark(boards[board], cell, mark);
+		boards[board] = updated ;
+		hash ^= MOVE_KEYS[move * 2 + (mark == SquareState.X ? 1 : 0)];
+
+		// only the sub-board that changed needs its status recomputed, and only if that closes it
+		// does the outer board need to be looked at:
+		boolean closed = false ;
+		final GameStatus boardStatus = Boards.status(updated);
+		if (boardStatus != GameStatus.OPEN) {
+			closed = true ;
+			final int bit = 1 << board ;
+			outerClosed |= bit ;
+			if (boardStatus == GameStatus.O_WON) {
+				outerO |= bit ;
+				if (Boards.hasLine(outerO)) {
+					gameStatus = GameStatus.O_WON ;
+				}
+			} else if (boardStatus == GameStatus.X_WON) {
+				outerX |= bit ;
+				if (Boards.hasLine(outerX)) {
+					gameStatus = GameStatus.X_WON ;
+				}
+			}
+			if (gameStatus == GameStatus.OPEN && outerClosed == Boards.CELL_MASK) {
+				gameStatus = GameStatus.DRAWN ;
+			}
+		}
+		closedHistory[moveCount] = closed ;
+		moveCount++ ;
+
+		hash ^= FORCED_KEYS[forcedBoard == ANY_BOARD ? 9 : forcedBoard];
+		forcedBoard = (outerClosed & (1 << cell)) == 0 ? cell : ANY_BOARD ;
+		hash ^= FORCED_KEYS[forcedBoard == ANY_BOARD ? 9 : forcedBoard];
+
+		currentMark = mark == SquareState.O ? SquareState.X : SquareState.O ;
+		hash ^= X_TO_MOVE_KEY ;
+	}
+
+	/**
+	 * Undo the last move.
+	 * @throws IllegalStateException if no moves have been made since the last reset.
+	 */
+	public void undoMove() {
+		if (moveCount == 0) {
+			throw new IllegalStateException("No move to undo");
+		}
+		moveCount-- ;
+		final int move = moveHistory[moveCount];
+		final int board = move / 9 ;
+		final int cell = move % 9 ;
+		final SquareState mark = currentMark == SquareState.O ? SquareState.X : SquareState.O ;
+
+		hash ^= X_TO_MOVE_KEY ;
+		currentMark = mark ;
+
+		hash ^= FORCED_KEYS[forcedBoard == ANY_BOARD ? 9 : forcedBoard];
+		forcedBoard = forcedHistory[moveCount];
+		hash ^= FORCED_KEYS[forcedBoard == ANY_BOARD ? 9 : forcedBoard];
+
+		if (closedHistory[moveCount]) {
+			final int bit = ~(1 << board);
+			outerClosed &= bit ;
+			outerO &= bit ;
+			outerX &= bit ;
+		}
+		// a move can only be made in an open game, so undoing one always reopens it:
+		gameStatus = GameStatus.OPEN ;
+
+		boards[board] &= ~(1 << (mark == SquareState.X ? cell + Boards.X_SHIFT : cell));
+		hash ^= MOVE_KEYS[move * 2 + (mark == SquareState.X ? 1 : 0)];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int outerRow = 0 ; outerRow < 3 ; outerRow++) {
+			for (int innerRow = 0 ; innerRow < 3 ; innerRow++) {
+				for (int outerColumn = 0 ; outerColumn < 3 ; outerColumn++) {
+					for (int innerColumn = 0 ; innerColumn < 3 ; innerColumn++) {
+						builder.append(getSquare(outerRow * 3 + outerColumn, innerRow * 3 + innerColumn));
+					}
+					if (outerColumn < 2) {
+						builder.append("|");
+					}
+				}
+				builder.append("\n");
+			}
+			if (outerRow < 2) {
+				builder.append("---+---+---\n");
+			}
+		}
+		return builder.toString();
+	}
+}
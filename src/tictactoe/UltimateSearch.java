@@ -0,0 +1,360 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tictactoe.Game.GameStatus;
+import tictactoe.Game.SquareState;
+
+/**
+ * Multithreaded alpha-beta search for {@link UltimateGame}.
+ * <p>
+ * The branching factor of Ultimate Tic-Tac-Toe is too large to search usefully on a single thread, so the
+ * root moves are split across a pool of worker threads. At each iteration of an iterative-deepening search,
+ * the first (best so far) root move is searched on the calling thread to establish a bound, and the
+ * remaining root moves are then searched in parallel, each against a shared, atomically-updated alpha.
+ * All threads share a lock-free transposition table.
+ * <p>
+ * A single UltimateSearch can be reused for many calls to chooseMove(...), but calls should not overlap.
+ */
+public class UltimateSearch {
+
+	private static final int WIN = 100000 ;
+	private static final int INFINITY = WIN + 1 ;
+
+	private static final int[] OUTER_WEIGHTS = {0, 100, 400} ;
+	private static final int[] INNER_WEIGHTS = {0, 2, 8} ;
+	// relative value of each sub-board (or square) by position: centre, then corners, then edges
+	private static final int[] POSITION_WEIGHTS = {3, 2, 3, 2, 4, 2, 3, 2, 3} ;
+
+	private static final int EXACT = 0 ;
+	private static final int LOWER_BOUND = 1 ;
+	private static final int UPPER_BOUND = 2 ;
+	private static final int NO_MOVE = 0xFF ;
+
+	private final int maxDepth ;
+	private final long timeLimitMillis ;
+	private final ExecutorService executorService ;
+
+	// Transposition table: each entry is two longs, key ^ data and data, so that a torn write from
+	// another thread is detected as a miss rather than returning another position's data.
+	private final long[] table ;
+	private final int tableMask ;
+
+	private final AtomicLong nodes = new AtomicLong();
+	private final AtomicLong tableHits = new AtomicLong();
+	private volatile long deadline ;
+	private volatile boolean stopped ;
+
+	/**
+	 * Creates a search engine.
+	 * @param maxDepth maximum depth (in plies) to search
+	 * @param timeLimitMillis time after which the search is abandoned, returning the best move from the last completed iteration
+	 * @param threads number of worker threads
+	 * @throws IllegalArgumentException if maxDepth or threads is less than one
+	 */
+	public UltimateSearch(int maxDepth, long timeLimitMillis, int threads) {
+		if (maxDepth < 1 || threads < 1) {
+			throw new IllegalArgumentException("maxDepth and threads must be at least one");
+		}
+		this.maxDepth = maxDepth ;
+		this.timeLimitMillis = timeLimitMillis ;
+		this.executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final int entries = 1 << 20 ;
+		this.table = new long[entries * 2];
+		this.tableMask = entries - 1 ;
+	}
+
+	/**
+	 * Creates a search engine with one worker thread per available processor.
+	 */
+	public UltimateSearch(int maxDepth, long timeLimitMillis) {
+		this(maxDepth, timeLimitMillis, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Total number of positions searched by this engine.
+	 */
+	public long getNodesSearched() {
+		return nodes.get();
+	}
+
+	/**
+	 * Total number of transposition table probes by this engine that returned a usable result.
+	 */
+	public long getTableHits() {
+		return tableHits.get();
+	}
+
+	/**
+	 * Stops the worker threads. The engine cannot be used after this.
+	 */
+	public void shutdown() {
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Chooses a move for the current player. The specified game is not modified.
+	 * @return the chosen move (board * 9 + cell), or -1 if the game is over.
+	 */
+	public int chooseMove(UltimateGame game) {
+		final int[] rootMoves = new int[UltimateGame.MAX_MOVES];
+		final int moveCount = game.legalMoves(rootMoves);
+		if (moveCount == 0) {
+			return -1 ;
+		}
+		if (moveCount == 1) {
+			return rootMoves[0];
+		}
+		stopped = false ;
+		deadline = System.currentTimeMillis() + timeLimitMillis ;
+
+		final Searcher mainSearcher = new Searcher(game.copy());
+		int bestMove = rootMoves[0];
+		try {
+			for (int depth = 1 ; depth <= maxDepth ; depth++) {
+				final int move = searchRoot(game, mainSearcher, rootMoves, moveCount, bestMove, depth);
+				if (stopped || mainSearcher.cancelled) {
+					break ;
+				}
+				bestMove = move ;
+			}
+		} catch (InterruptedException e) {
+			// searchRoot(...) has already stopped the root moves still running
+			Thread.currentThread().interrupt();
+		} finally {
+			nodes.addAndGet(mainSearcher.nodes);
+			tableHits.addAndGet(mainSearcher.tableHits);
+			Metrics.getInstance().addNodesSearched(mainSearcher.nodes);
+			Metrics.getInstance().addCacheHits(mainSearcher.tableHits);
+		}
+		return bestMove ;
+	}
+
+	private int searchRoot(final UltimateGame game, Searcher mainSearcher, int[] rootMoves, int moveCount,
+			final int firstMove, final int depth) throws InterruptedException {
+
+		// search the best move from the previous iteration first, on this thread, to get a good alpha:
+		final UltimateGame position = mainSearcher.game ;
+		position.makeMove(firstMove);
+		final int firstScore = -mainSearcher.search(depth - 1, 1, -INFINITY, INFINITY);
+		position.undoMove();
+		if (mainSearcher.cancelled) {
+			return firstMove ;
+		}
+
+		final AtomicInteger alpha = new AtomicInteger(firstScore);
+		final int[] best = {firstMove} ;
+
+		List<Future<Long>> results = new ArrayList<>();
+		for (int i = 0 ; i < moveCount ; i++) {
+			final int move = rootMoves[i];
+			if (move == firstMove) {
+				continue ;
+			}
+			results.add(executorService.submit(new Callable<Long>() {
+				@Override
+				public Long call() {
+					Searcher searcher = new Searcher(game.copy());
+					searcher.game.makeMove(move);
+					int a = alpha.get();
+					int score = -searcher.search(depth - 1, 1, -INFINITY, -a);
+					if (! stopped && ! searcher.cancelled) {
+						synchronized (best) {
+							if (score > alpha.get()) {
+								alpha.set(score);
+								best[0] = move ;
+							}
+						}
+					}
+					tableHits.addAndGet(searcher.tableHits);
+					Metrics.getInstance().addNodesSearched(searcher.nodes);
+					Metrics.getInstance().addCacheHits(searcher.tableHits);
+					return searcher.nodes ;
+				}
+			}));
+		}
+		boolean completed = false ;
+		try {
+			for (Future<Long> result : results) {
+				nodes.addAndGet(result.get());
+			}
+			completed = true ;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			if (! completed) {
+				// Don't leave root moves searching (or queued) on the pool: they would delay the next search.
+				// Running tasks see the interrupt even if the next search has already reset stopped.
+				stopped = true ;
+				for (Future<Long> result : results) {
+					result.cancel(true);
+				}
+			}
+		}
+		synchronized (best) {
+			return best[0];
+		}
+	}
+
+	/**
+	 * Static evaluation of the position, from the point of view of the specified mark.
+	 */
+	static int evaluate(UltimateGame game, SquareState me) {
+		final SquareState opponent = me == SquareState.O ? SquareState.X : SquareState.O ;
+		final int myOuter = game.getOuterCells(me);
+		final int opponentOuter = game.getOuterCells(opponent);
+		int score = 0 ;
+		for (int mask : Boards.LINE_MASKS) {
+			int mine = Integer.bitCount(mask & myOuter);
+			int theirs = Integer.bitCount(mask & opponentOuter);
+			if (theirs == 0) {
+				score += OUTER_WEIGHTS[Math.min(mine, 2)];
+			}
+			if (mine == 0) {
+				score -= OUTER_WEIGHTS[Math.min(theirs, 2)];
+			}
+		}
+		for (int board = 0 ; board < 9 ; board++) {
+			if (((myOuter >>> board) & 1) != 0) {
+				score += 20 * POSITION_WEIGHTS[board];
+			} else if (((opponentOuter >>> board) & 1) != 0) {
+				score -= 20 * POSITION_WEIGHTS[board];
+			} else if (((game.getClosedBoards() >>> board) & 1) == 0) {
+				final int packed = game.getBoard(board);
+				final int mineCells = me == SquareState.O ? Boards.oCells(packed) : Boards.xCells(packed);
+				final int theirCells = me == SquareState.O ? Boards.xCells(packed) : Boards.oCells(packed);
+				int boardScore = 0 ;
+				for (int mask : Boards.LINE_MASKS) {
+					int mine = Integer.bitCount(mask & mineCells);
+					int theirs = Integer.bitCount(mask & theirCells);
+					if (theirs == 0) {
+						boardScore += INNER_WEIGHTS[mine];
+					}
+					if (mine == 0) {
+						boardScore -= INNER_WEIGHTS[theirs];
+					}
+				}
+				score += boardScore * POSITION_WEIGHTS[board];
+			}
+		}
+		return score ;
+	}
+
+	// Per-thread search state
+	private final class Searcher {
+		private final UltimateGame game ;
+		private final int[][] moves ;
+		private long nodes ;
+		private long tableHits ;
+		// set if this searcher's thread is interrupted (e.g. its task was cancelled); unlike stopped,
+		// this only applies to this searcher
+		private boolean cancelled ;
+
+		Searcher(UltimateGame game) {
+			this.game = game ;
+			this.moves = new int[maxDepth + 1][UltimateGame.MAX_MOVES];
+		}
+
+		// Negamax alpha-beta; scores are from the point of view of the player to move.
+		int search(int depth, int ply, int alpha, int beta) {
+			nodes++ ;
+			if ((nodes & 0xFFF) == 0) {
+				if (System.currentTimeMillis() > deadline) {
+					stopped = true ;
+				}
+				if (Thread.currentThread().isInterrupted()) {
+					cancelled = true ;
+				}
+			}
+			if (stopped || cancelled) {
+				return 0 ;
+			}
+
+			final GameStatus status = game.getGameStatus();
+			if (status == GameStatus.DRAWN) {
+				return 0 ;
+			} else if (status != GameStatus.OPEN) {
+				// the previous move won the game, so the player to move has lost:
+				return -(WIN - ply) ;
+			}
+			if (depth == 0) {
+				return evaluate(game, game.getCurrentMark());
+			}
+
+			final long key = game.getHash();
+			final int slot = (int) key & tableMask ;
+			final long data = table[slot * 2 + 1];
+			int tableMove = NO_MOVE ;
+			if ((table[slot * 2] ^ data) == key) {
+				tableMove = (int) (data & 0xFF);
+				final int entryDepth = (int) ((data >>> 8) & 0xFF);
+				final int flag = (int) ((data >>> 16) & 0x3);
+				final int score = (int) (data >> 32);
+				if (entryDepth >= depth && Math.abs(score) < WIN - UltimateGame.MAX_MOVES) {
+					if (flag == EXACT
+							|| (flag == LOWER_BOUND && score >= beta)
+							|| (flag == UPPER_BOUND && score <= alpha)) {
+						tableHits++ ;
+						return score ;
+					}
+				}
+			}
+
+			final int[] legal = moves[ply];
+			final int count = game.legalMoves(legal);
+			if (tableMove != NO_MOVE) {
+				for (int i = 1 ; i < count ; i++) {
+					if (legal[i] == tableMove) {
+						legal[i] = legal[0];
+						legal[0] = tableMove ;
+						break ;
+					}
+				}
+			}
+
+			final int originalAlpha = alpha ;
+			int best = -INFINITY ;
+			int bestMove = legal[0];
+			for (int i = 0 ; i < count ; i++) {
+				game.makeMove(legal[i]);
+				final int score = -search(depth - 1, ply + 1, -beta, -alpha);
+				game.undoMove();
+				if (stopped || cancelled) {
+					return 0 ;
+				}
+				if (score > best) {
+					best = score ;
+					bestMove = legal[i];
+				}
+				if (score > alpha) {
+					alpha = score ;
+				}
+				if (alpha >= beta) {
+					break ;
+				}
+			}
+
+			final int flag = best <= originalAlpha ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT ;
+			final long entry = ((long) best << 32) | ((long) flag << 16) | ((long) depth << 8) | bestMove ;
+			table[slot * 2] = key ^ entry ;
+			table[slot * 2 + 1] = entry ;
+			return best ;
+		}
+	}
+}